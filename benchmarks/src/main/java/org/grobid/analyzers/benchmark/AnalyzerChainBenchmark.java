@@ -0,0 +1,65 @@
+package org.grobid.analyzers.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.grobid.nlp.textboundaries.ReTokenizer;
+
+/**
+ * Measures ReTokenizer.tokenizeWithSpaces, and the bare analyzer chain through tokensAsArray,
+ * for the Grobid Japanese, Chinese and Korean analyzers on the bundled patent corpus.
+ * Each invocation tokenizes one sentence, cycling through the corpus of the language.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerChainBenchmark {
+
+	@Param({"ja_g", "zh_g", "ko_g"})
+	public String lang;
+
+	private ReTokenizer tokenizer;
+
+	private String[] sentences;
+
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		sentences = PatentCorpus.sentences(lang);
+		tokenizer = new ReTokenizer(lang);
+		// load the dictionaries outside of the measurement
+		for (String s : sentences)
+			tokenizer.tokenizeWithSpaces(s);
+	}
+
+	@Benchmark
+	public String tokenizeWithSpaces() throws Exception {
+		String s = sentences[next];
+		next = (next+1) % sentences.length;
+		return tokenizer.tokenizeWithSpaces(s);
+	}
+
+	@Benchmark
+	public String[] tokensAsArray() throws Exception {
+		String s = sentences[next];
+		next = (next+1) % sentences.length;
+		return tokenizer.tokensAsArray(s);
+	}
+}
@@ -0,0 +1,39 @@
+package org.grobid.analyzers.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler (allocation rate) and writes the results
+ * as JSON, so that they can be diffed between releases.
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options]
+ * The result file defaults to jmh-result.json, use -rff to change it. Any other
+ * standard JMH option (benchmark regexp, -p lang=ko_g, -f, -wi, -i...) is accepted.
+ * Only AnalyzerChainBenchmark is run by default, give TokenizerBenchmark as regexp for
+ * the Korean tokenizer alone.
+ *
+ */
+public class BenchmarkRunner {
+
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+
+		ChainedOptionsBuilder opt = new OptionsBuilder()
+			.parent(cmd)
+			.addProfiler(GCProfiler.class)
+			.resultFormat(cmd.getResultFormat().orElse(ResultFormatType.JSON));
+		if (!cmd.getResult().hasValue())
+			opt.result(DEFAULT_RESULT_FILE);
+		if (cmd.getIncludes().isEmpty())
+			opt.include(AnalyzerChainBenchmark.class.getName());
+
+		new Runner(opt.build()).run();
+	}
+}
@@ -0,0 +1,50 @@
+package org.grobid.analyzers.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bundled corpus of CJK patent sentences the benchmarks run on.
+ * Sentences are stored as "language code TAB sentence" lines in
+ * patent-sentences.txt, next to this class.
+ *
+ */
+public class PatentCorpus {
+
+	public static final String CORPUS_RESOURCE = "patent-sentences.txt";
+
+	/**
+	 * Returns the sentences of the corpus for a given language code (ja_g, zh_g, ko_g...)
+	 * @param lang the language code as used by ReTokenizer
+	 * @return the sentences, in corpus order
+	 * @throws IOException if the corpus cannot be read or has no sentence for the language
+	 */
+	public static String[] sentences(String lang) throws IOException {
+		InputStream in = PatentCorpus.class.getResourceAsStream(CORPUS_RESOURCE);
+		if (in == null)
+			throw new IOException("Cannot find the benchmark corpus "+CORPUS_RESOURCE);
+
+		List<String> res = new ArrayList<String>();
+		BufferedReader buf = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+		try {
+			String l;
+			while ((l=buf.readLine()) != null) {
+				if (l.length() == 0 || l.startsWith("#"))
+					continue;
+				int tab = l.indexOf('\t');
+				if (tab > 0 && l.substring(0, tab).equals(lang))
+					res.add(l.substring(tab+1));
+			}
+		} finally {
+			buf.close();
+		}
+		if (res.isEmpty())
+			throw new IOException("No sentence for language "+lang+" in "+CORPUS_RESOURCE);
+		return res.toArray(new String[res.size()]);
+	}
+}
@@ -0,0 +1,72 @@
+package org.grobid.analyzers.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.grobid.analyzers.grobidkr.KoreanTokenizer;
+
+// Lucene is relocated in the shaded grobid-lucene-analysers jar
+import shadedgrobid.org.apache.lucene.analysis.Tokenizer;
+import shadedgrobid.org.apache.lucene.analysis.standard.StandardTokenizer;
+import shadedgrobid.org.apache.lucene.util.Version;
+
+/**
+ * Measures the bare tokenizer of the Korean chain, KoreanTokenizer, against Lucene's
+ * StandardTokenizer on the mixed Hangul/Latin sentences of the bundled patent corpus.
+ * A single tokenizer is reset on each sentence, as the analyzer chain does, and the
+ * throughput is given in sentences.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+	@Param({"korean", "standard"})
+	public String tokenizer;
+
+	private Tokenizer stream;
+
+	private String[] sentences;
+
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		sentences = PatentCorpus.sentences("ko_g");
+		if (tokenizer.equals("korean"))
+			stream = new KoreanTokenizer(new StringReader(""));
+		else
+			stream = new StandardTokenizer(Version.LUCENE_45, new StringReader(""));
+	}
+
+	@Benchmark
+	public int tokenize() throws Exception {
+		String s = sentences[next];
+		next = (next+1) % sentences.length;
+		stream.setReader(new StringReader(s));
+		stream.reset();
+		int n = 0;
+		while (stream.incrementToken())
+			n++;
+		stream.end();
+		stream.close();
+		return n;
+	}
+}
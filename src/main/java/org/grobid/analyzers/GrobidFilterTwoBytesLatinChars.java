@@ -54,7 +54,23 @@ private CharTermAttribute termAttr;
 	     // Here we convert any Japanese punctuation to its usual Latin counterpart
 	    // see for example: http://en.wikipedia.org/wiki/Japanese_typographic_symbols	    
 	    for (int i=0; i<bufferLength; i++) {
-	    	char c= buffer[i]; char newChar=c;
+	    	char c= buffer[i]; char newChar=normalize(c);
+	    	if (newChar != c) {buffer[i]=newChar; charModified=true;}
+	    }
+
+	    if (charModified) { // The character was changed, change termAttr 
+	    	termAttr.setEmpty(); 
+	    	for (int i=0; i < bufferLength; i++) {termAttr.append(buffer[i]);}
+	    }
+	    return true;
+  }
+
+  /**
+   * Converts a full-width latin char (and the ideographic space) to its usual Latin counterpart.
+   * @return the converted char, or c itself
+   */
+  public static char normalize(char c) {
+	    	char newChar=c;
 	    	if (c>=0xFF01 && c<=0xFF5E && c!= 0xFF0F) { 
 	    		// This is a Kanji-latin char, let's convert all the string
 	    		newChar=(char)(c-0xFF01+0x0021);
@@ -119,14 +135,7 @@ private CharTermAttribute termAttr;
 	    			newChar=' '; break;				  
 	    		}
 	    	}
-	    	if (newChar != c) {buffer[i]=newChar; charModified=true;}
-	    }
-
-	    if (charModified) { // The character was changed, change termAttr 
-	    	termAttr.setEmpty(); 
-	    	for (int i=0; i < bufferLength; i++) {termAttr.append(buffer[i]);}
-	    }
-	    return true;
+	    	return newChar;
   }
 
 }
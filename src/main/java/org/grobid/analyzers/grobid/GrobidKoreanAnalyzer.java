@@ -18,19 +18,28 @@ package org.grobid.analyzers.grobid;
  * limitations under the License.
  */
 
+import java.io.IOException;
 import java.io.Reader;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopFilter;
 import org.apache.lucene.analysis.standard.StandardFilter;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
-import org.grobid.analyzers.GrobidFilterTwoBytesLatinChars;
+import org.grobid.analyzers.grobidkr.KoreanAnalysisMode;
 import org.grobid.analyzers.grobidkr.KoreanFilter;
 import org.grobid.analyzers.grobidkr.KoreanTokenizer;
+import org.grobid.analyzers.grobidkr.morph.AnalysisCache;
+import org.grobid.analyzers.grobidkr.morph.MorphComponents;
+import org.grobid.analyzers.grobidkr.morph.MorphException;
+import org.grobid.analyzers.grobidkr.utils.DictionaryUtil;
+import org.grobid.analyzers.grobidkr.utils.KoreanEnv;
 
 /**
  * Filters {@link StandardTokenizer} with {@link StandardFilter}, {@link
@@ -42,21 +51,56 @@ public class GrobidKoreanAnalyzer extends Analyzer {
 	
 	  private boolean bigrammable = true;
 	  private boolean hasOrigin = true;
+	  
+	  private volatile AnalysisCache analysisCache;
+	  
+	  private volatile KoreanAnalysisMode analysisMode = KoreanAnalysisMode.FULL;
 
 	  public static final String DIC_ENCODING = "UTF-8";
 
     /** Default maximum allowed token length */
     public static final int DEFAULT_MAX_TOKEN_LENGTH = 255;
+
+    /**
+     * The analysis cache is sized by the KoreanEnv.ANALYSIS_CACHE_SIZE property (none by default).
+     */
+    public GrobidKoreanAnalyzer() {
+        super(GLOBAL_REUSE_STRATEGY);
+        int size = 0;
+        try {
+            String value = KoreanEnv.getInstance().getValue(KoreanEnv.ANALYSIS_CACHE_SIZE);
+            if (value != null && value.trim().length() > 0)
+                size = Integer.parseInt(value.trim());
+        } catch (MorphException e) {
+            // no configuration, no cache
+        }
+        setAnalysisCacheSize(size);
+    }
 	
+    /**
+     * The components are created once per thread and reused for all the fields and documents
+     * (GLOBAL_REUSE_STRATEGY). The KoreanFilter takes the MorphAnalyzer and WordSpaceAnalyzer of
+     * its thread from {@link MorphComponents}, and clears its state of the document in reset().
+     * The current analysis mode and cache are given to the filter each time the components are reused.
+     */
     @Override
     protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
         Tokenizer tok = new KoreanTokenizer( reader );
-        TokenStream result = new KoreanFilter(tok, bigrammable, hasOrigin);
+        final KoreanFilter result = new KoreanFilter(tok, bigrammable, hasOrigin, analysisCache);
      //   result = new LowerCaseFilter(Version.LUCENE_35,result);
     //    result = new StopFilter(result, stopSet);
-        result = new GrobidFilterTwoBytesLatinChars(result);
+        // the full-width chars are converted by the filter, as GrobidFilterTwoBytesLatinChars does
+        result.setNormalizeWidth(true);
+        result.setAnalysisMode(analysisMode);
         
-        return new TokenStreamComponents(tok, result);
+        return new TokenStreamComponents(tok, result) {
+            @Override
+            protected void setReader(Reader reader) throws IOException {
+                result.setAnalysisMode(analysisMode);
+                result.setAnalysisCache(analysisCache);
+                super.setReader(reader);
+            }
+        };
     }
 
   	/**
@@ -75,4 +119,77 @@ public class GrobidKoreanAnalyzer extends Analyzer {
   	public void setHasOrigin(boolean has) {
   		  hasOrigin = has;
   	}
+  	
+  	/**
+  	 * Sets the morphological analysis of the Korean words, FULL by default: FAST to trade
+  	 * recall for throughput, DECOMPOUND for the compound nouns and bigrams.
+  	 * The token streams returned afterwards, on any thread, use the new mode; a stream
+  	 * being consumed keeps the mode it was returned with.
+  	 * @param mode
+  	 */
+  	public void setAnalysisMode(KoreanAnalysisMode mode) {
+  		  analysisMode = mode;
+  	}
+  	
+  	public KoreanAnalysisMode getAnalysisMode() {
+  		  return analysisMode;
+  	}
+  	
+  	/**
+  	 * Caches the analyses of the last size distinct words, 0 to disable the cache.
+  	 * The token streams returned afterwards, on any thread, use the new cache.
+  	 * @param size
+  	 */
+  	public void setAnalysisCacheSize(int size) {
+  		  analysisCache = size > 0 ? new AnalysisCache(size) : null;
+  	}
+  	
+  	/**
+  	 * Sets the cache of the word analyses, which can be shared with other analyzers (null for none).
+  	 * The token streams returned afterwards, on any thread, use the new cache.
+  	 * @param cache
+  	 */
+  	public void setAnalysisCache(AnalysisCache cache) {
+  		  analysisCache = cache;
+  	}
+  	
+  	/**
+  	 * @return the cache of the word analyses, with its hit/miss/eviction counters, or null if disabled
+  	 */
+  	public AnalysisCache getAnalysisCache() {
+  		  return analysisCache;
+  	}
+  	
+  	/**
+  	 * Loads a user dictionary in the background, on a daemon thread, see
+  	 * {@link DictionaryUtil#loadUserDictionary(String)}. The token streams of all the Korean
+  	 * analyzers keep running with the current dictionary and use the new one once it is swapped in;
+  	 * the analysis caches are emptied then.
+  	 * @param path the user dictionary file, or null to remove the user words
+  	 * @return completed with the number of user words, or exceptionally if the file cannot be loaded
+  	 */
+  	public static CompletableFuture<Integer> loadUserDictionary(String path) {
+  		  return loadUserDictionary(path, new Executor() {
+  			  public void execute(Runnable r) {
+  				  Thread t = new Thread(r, "Korean-user-dictionary");
+  				  t.setDaemon(true);
+  				  t.start();
+  			  }
+  		  });
+  	}
+  	
+  	/**
+  	 * Same as {@link #loadUserDictionary(String)}, on the given executor.
+  	 */
+  	public static CompletableFuture<Integer> loadUserDictionary(final String path, Executor executor) {
+  		  return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+  			  public Integer get() {
+  				  try {
+  					  return DictionaryUtil.loadUserDictionary(path);
+  				  } catch (MorphException e) {
+  					  throw new CompletionException("cannot load the user dictionary "+path, e);
+  				  }
+  			  }
+  		  }, executor);
+  	}
 }
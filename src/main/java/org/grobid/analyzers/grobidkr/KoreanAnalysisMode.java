@@ -0,0 +1,44 @@
+package org.grobid.analyzers.grobidkr;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 형태소 분석 방식: how much of the morphological analysis {@link KoreanFilter} runs on
+ * the Korean words, from the fastest to the one with the most index terms.
+ */
+public enum KoreanAnalysisMode {
+
+	/**
+	 * The word is only split into its stem and josa/eomi, the best split being taken
+	 * without sorting the candidates nor confirming the compound nouns.
+	 */
+	FAST,
+
+	/**
+	 * The word is split into its stem and josa/eomi after the complete analysis
+	 * (the default).
+	 */
+	FULL,
+
+	/**
+	 * The complete analysis with the compound nouns: a word which is not split is returned
+	 * with its stems, its compound nouns (or bigrams, see GrobidKoreanAnalyzer.setBigrammable) and,
+	 * if set, the original word, all at the same position.
+	 */
+	DECOMPOUND
+}
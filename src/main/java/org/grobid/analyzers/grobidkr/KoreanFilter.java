@@ -20,42 +20,55 @@ package org.grobid.analyzers.grobidkr;
 import java.io.IOException;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Stack;
+import java.util.Set;
 
-import org.apache.lucene.analysis.Token;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.grobid.analyzers.GrobidFilterTwoBytesLatinChars;
+import org.grobid.analyzers.grobidkr.morph.AnalysisCache;
 import org.grobid.analyzers.grobidkr.morph.AnalysisOutput;
 import org.grobid.analyzers.grobidkr.morph.CompoundEntry;
 import org.grobid.analyzers.grobidkr.morph.MorphAnalyzer;
+import org.grobid.analyzers.grobidkr.morph.MorphComponents;
 import org.grobid.analyzers.grobidkr.morph.MorphException;
 import org.grobid.analyzers.grobidkr.morph.PatternConstants;
 import org.grobid.analyzers.grobidkr.morph.WordSpaceAnalyzer;
 import org.grobid.analyzers.grobidkr.utils.DictionaryUtil;
 
+/**
+ * Splits the Korean words into their stem and their josa or eomi.
+ * <p>
+ *
+ * The tokens are analyzed in the attributes: the first token of a word is written
+ * in the attributes, the next ones wait in a queue of reused buffers, so that no
+ * object is built per token besides the analysis.
+ */
 public final class KoreanFilter extends TokenFilter {
 
-	private static final boolean DECOMPOUND = false;
+	private final TokenQueue koreanQueue;
 	
-	private final LinkedList<Token> koreanQueue;
+	/** the analyzer of the current thread, taken with the first Korean token of a document */
+	private MorphAnalyzer morph;
 	
-	private final LinkedList<Token> cjQueue;
+	private AnalysisCache analysisCache;
 	
-	private final MorphAnalyzer morph;
-	
-	final WordSpaceAnalyzer wsAnal;
+	/** taken with the first Korean token of a document which is not returned as one token */
+	private WordSpaceAnalyzer wsAnal;
 	
 	private boolean bigrammable = true;
 	
 	private boolean hasOrigin = true;
+	
+	private boolean normalizeWidth = false;
+	
+	private KoreanAnalysisMode mode = KoreanAnalysisMode.FULL;
 
 	public boolean returnOnlyOne = true;
 	
@@ -75,10 +88,7 @@ public final class KoreanFilter extends TokenFilter {
     	posAttr = (PositionIncrementAttribute) addAttribute(PositionIncrementAttribute.class) ;
     	offsetAttr = (OffsetAttribute) addAttribute(OffsetAttribute.class) ;
 		
-		koreanQueue =  new LinkedList();
-		cjQueue =  new LinkedList();
-		morph = new MorphAnalyzer();
-		wsAnal = new WordSpaceAnalyzer();
+		koreanQueue =  new TokenQueue();
 	}
 
 	/**
@@ -97,64 +107,93 @@ public final class KoreanFilter extends TokenFilter {
 	}
 	
 	/**
-	 * 한글을 분석한다.
-	 * @param token
+	 * @param cache	cache of the word analyses, possibly shared with other filters (null for none)
+	 */
+	public KoreanFilter(TokenStream input, boolean bigram, boolean has, AnalysisCache cache) {
+		this(input, bigram, has);
+		analysisCache = cache;
+	}
+	
+	/**
+	 * Sets the stem of a word split into its stem and josa, or stem and vsfx/eomi, and queues the josa or eomi.
+	 * @return false if the output does not split the word
+	 */
+	private boolean addSplit(AnalysisOutput aElement, int startOffset, int endOffset) {
+		if (contentEquals(termAttr, aElement.getStem())) return false;
+		if (concatEquals(termAttr, aElement.getStem(), aElement.getJosa(), "")) {
+			koreanQueue.add(startOffset+aElement.getStem().length()+1, endOffset,
+					KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.POSTJOSA], 1);
+			koreanQueue.append("−");
+			koreanQueue.append(aElement.getJosa());
+		} else if (concatEquals(termAttr, aElement.getStem(), aElement.getVsfx(), aElement.getEomi())) {
+			koreanQueue.add(startOffset+aElement.getStem().length()+1, endOffset,
+					KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.POSTEOMI], 1);
+			koreanQueue.append("−");
+			koreanQueue.append(aElement.getVsfx());
+			koreanQueue.append(aElement.getEomi());
+		} else {
+			return false;
+		}
+		setStem(aElement.getStem(), startOffset);
+		return true;
+	}
+
+	/**
+	 * 한글을 분석한다: the token in the attributes is replaced by the first token of the word,
+	 * the next ones are queued.
 	 * @param skipinc
-	 * @return
+	 * @return false if the word gives no token
 	 * @throws MorphException
 	 */
-	private Token analysisKorean(Token token, int skipinc) throws MorphException {
+	private boolean analysisKorean(int skipinc) throws MorphException {
 
-		String input = token.toString();
-		List<AnalysisOutput> outputs = morph.analyze(input);
+		int startOffset = offsetAttr.startOffset();
+		int endOffset = offsetAttr.endOffset();
+		posAttr.setPositionIncrement(1);
+		
+		if(morph==null) morph = mode==KoreanAnalysisMode.DECOMPOUND ?
+				MorphComponents.get().getCompoundMorphAnalyzer() : MorphComponents.get().getMorphAnalyzer();
+		if(mode==KoreanAnalysisMode.FULL && returnOnlyOne && analysisCache==null) {
+			// only the first split is used
+			AnalysisOutput split = morph.analyzeFirst(termAttr.buffer(), 0, termAttr.length());
+			if(split!=null) addSplit(split, startOffset, endOffset);
+			return true;
+		}
+		
+		List<AnalysisOutput> outputs;
+		if(mode==KoreanAnalysisMode.FAST)
+			outputs = morph.analyzeSplit(termAttr.buffer(), 0, termAttr.length());
+		else if(analysisCache!=null && mode==KoreanAnalysisMode.FULL)
+			outputs = analysisCache.analyze(morph, termAttr.toString(), termAttr.buffer(), 0, termAttr.length());
+		else
+			outputs = morph.analyze(termAttr.buffer(), 0, termAttr.length());
 		//		if(outputs.size()==0) return null;
-		if(outputs.size()==0) return token;
-
-		HashMap<String,Integer> map = new HashMap<String,Integer>();
-		if(hasOrigin) map.put(input, new Integer(1));
+		if(outputs.size()==0) return true;
 
 		// BP look first for stem+josa in any of the outputs
 		for (int k=0; k<outputs.size(); k++) {
-			AnalysisOutput aElement=outputs.get(k);		
-			if (! token.toString().equals(aElement.getStem())) {
-				if (token.toString().equals(aElement.getStem()+aElement.getJosa())) {
-					Token t = new Token(aElement.getStem(),
-							token.startOffset(),token.startOffset()+aElement.getStem().length()
-							,KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.KORNOUN]);
-					koreanQueue.add(t);
-					Token t2 = new Token("−"+aElement.getJosa(),
-							token.startOffset()+aElement.getStem().length()+1,token.endOffset()
-							,KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.POSTJOSA]);
-					koreanQueue.add(t2);
-					return koreanQueue.removeFirst();
-				} else if (token.toString().equals(aElement.getStem()+aElement.getVsfx()+aElement.getEomi())) {
-					Token t = new Token(aElement.getStem(),
-							token.startOffset(),token.startOffset()+aElement.getStem().length()
-							,KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.KORNOUN]);
-					koreanQueue.add(t);
-					Token t2 = new Token("−"+aElement.getVsfx()+aElement.getEomi(),
-							token.startOffset()+aElement.getStem().length()+1,token.endOffset()
-							,KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.POSTEOMI]);
-					koreanQueue.add(t2);
-					return koreanQueue.removeFirst();
-				}			
-			}
+			if (addSplit(outputs.get(k), startOffset, endOffset)) return true;
 		}
 		if (returnOnlyOne) {
-			return token;
+			return true;
 		} else {
 		
+		String input = termAttr.toString();
+		
+		Set<String> map = new HashSet<String>();
+		if(hasOrigin) map.add(input);
 		
 		if(outputs.get(0).getScore()==AnalysisOutput.SCORE_CORRECT) {
 			extractKeyword(outputs, map);
 		} else {
 			try{
+				if(wsAnal==null) wsAnal = MorphComponents.get().getWordSpaceAnalyzer();
 				List<AnalysisOutput> list = wsAnal.analyze(input);
 
 				List<AnalysisOutput> results = new ArrayList<AnalysisOutput>();			
 				if(list.size()>1) {
 					for(AnalysisOutput o : list) {
-						if(hasOrigin) map.put(o.getSource(), new Integer(1));				
+						if(hasOrigin) map.add(o.getSource());				
 						results.addAll(morph.analyze(o.getSource()));
 					}				
 				} else {
@@ -167,49 +206,75 @@ public final class KoreanFilter extends TokenFilter {
 			}
 		}
 
-		Iterator<String> iter = map.keySet().iterator();
 		int i=0;
-		while(iter.hasNext()) {
-
-			String text = iter.next();
+		for(String text : map) {
 
 			//		if(text.length()<=1) continue;
 
 			int index = input.indexOf(text);
-			Token t = new Token(text,
-					token.startOffset()+(index!=-1?index:0),
-					index!=-1?token.startOffset()+index+text.length():token.endOffset(),
-							KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.KOROREAN]);
-			if (i==0) 
-				t.setPositionIncrement(token.getPositionIncrement()+skipinc);
-			else 
-				t.setPositionIncrement(0);
-
-			koreanQueue.add(t);
+			koreanQueue.add(startOffset+(index!=-1?index:0),
+					index!=-1?startOffset+index+text.length():endOffset,
+					KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.KOROREAN], i==0 ? 1+skipinc : 0);
+			koreanQueue.append(text);
 			i++;
 		}
 	}
-		if (koreanQueue.size()==0) 
-			return null;
+		if (koreanQueue.isEmpty()) 
+			return false;
+
+		koreanQueue.poll(termAttr, offsetAttr, typeAttr, posAttr);
+		return true;
+	}
+
+	/**
+	 * Writes the stem of the word in the attributes.
+	 */
+	private void setStem(String stem, int startOffset) {
+		termAttr.setEmpty().append(stem);
+		typeAttr.setType(KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.KORNOUN]);
+		offsetAttr.setOffset(startOffset, startOffset+stem.length());
+	}
+
+	/**
+	 * Same as s.toString().equals(a).
+	 */
+	private static boolean contentEquals(CharSequence s, String a) {
+		return a!=null && s.length()==a.length() && regionMatches(s, 0, a);
+	}
+
+	private static boolean regionMatches(CharSequence s, int offset, String a) {
+		for (int i=0; i<a.length(); i++)
+			if (s.charAt(offset+i)!=a.charAt(i))
+				return false;
+		return true;
+	}
 
-		return koreanQueue.removeFirst();
+	/**
+	 * Same as s.equals(a+b+c), without building the concatenation (a null part is "null").
+	 */
+	private static boolean concatEquals(CharSequence s, String a, String b, String c) {
+		a = String.valueOf(a);
+		b = String.valueOf(b);
+		c = String.valueOf(c);
+		return s.length()==a.length()+b.length()+c.length() &&
+				regionMatches(s, 0, a) && regionMatches(s, a.length(), b) && regionMatches(s, s.length()-c.length(), c);
 	}
 
-	private void extractKeyword(List<AnalysisOutput> outputs, HashMap<String,Integer> map) throws MorphException {
+	private void extractKeyword(List<AnalysisOutput> outputs, Set<String> map) throws MorphException {
 		for(AnalysisOutput output : outputs) {			
 			if(output.getPos()!=PatternConstants.POS_VERB) {
-				map.put(output.getStem(), new Integer(1));	
+				map.add(output.getStem());	
 			}				
 
-			if(DECOMPOUND && output.getScore()>=AnalysisOutput.SCORE_COMPOUNDS) {
+			if(mode==KoreanAnalysisMode.DECOMPOUND && output.getScore()>=AnalysisOutput.SCORE_COMPOUNDS) {
 				List<CompoundEntry> cnouns = output.getCNounList();
 				for(int jj=0;jj<cnouns.size();jj++) {
 					CompoundEntry cnoun = cnouns.get(jj);
-					if(cnoun.getWord().length()>1) map.put(cnoun.getWord(),  new Integer(0));
+					if(cnoun.getWord().length()>1) map.add(cnoun.getWord());
 					if(jj==0 && cnoun.getWord().length()==1)
-						map.put(cnoun.getWord()+cnouns.get(jj+1).getWord(),  new Integer(0));
+						map.add(cnoun.getWord()+cnouns.get(jj+1).getWord());
 					else if(jj>1 && cnoun.getWord().length()==1)
-						map.put(cnouns.get(jj).getWord()+cnoun.getWord(),  new Integer(0));
+						map.add(cnouns.get(jj).getWord()+cnoun.getWord());
 				}
 			} else if(bigrammable){
 				addBiagramToMap(output.getStem(),map);
@@ -217,18 +282,18 @@ public final class KoreanFilter extends TokenFilter {
 		}
 	}
 	
-	private void addBiagramToMap(String input, HashMap<String,Integer> map) {
+	private void addBiagramToMap(String input, Set<String> map) {
 		int offset = 0;
 		int strlen = input.length();
 		while(offset<strlen-1) {
 			if(isAlphaNumChar(input.charAt(offset))) {
 				String text = findAlphaNumeric(input.substring(offset));
-				map.put(text,  new Integer(0));
+				map.add(text);
 				offset += text.length();
 			} else {
 				String text = input.substring(offset,
 						offset+2>strlen?strlen:offset+2);
-				map.put(text,  new Integer(0));
+				map.add(text);
 				offset++;
 			}				
 		}
@@ -243,19 +308,15 @@ public final class KoreanFilter extends TokenFilter {
 		return text.substring(0,pos);
 	}
 	
-	private Token analysisCJ(Token token, int skipinc) throws MorphException {
-		String input = token.toString();
-		
-		Token t = new Token(input,0,token.endOffset(),KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.CJ]);
-		t.setPositionIncrement(token.getPositionIncrement()+skipinc);
-		cjQueue.add(t);	
-		return cjQueue.removeFirst();
-	}
-	
-	private Token analysisETC(Token t) throws MorphException {
-	    char[] buffer = t.buffer();
-	    final int bufferLength = t.length();
-	    final String type = t.type();
+	/**
+	 * The tokens which are not Korean words are not analyzed: the 's or the dots of the
+	 * acronyms are removed and, if normalizeWidth is set, the full-width chars are converted
+	 * in the same pass.
+	 */
+	private void analysisETC() {
+	    char[] buffer = termAttr.buffer();
+	    int bufferLength = termAttr.length();
+	    final String type = typeAttr.type();
 
 	    if (type == APOSTROPHE_TYPE &&
 	    	bufferLength >= 2 &&
@@ -263,19 +324,19 @@ public final class KoreanFilter extends TokenFilter {
 	        (buffer[bufferLength-1] == 's' || buffer[bufferLength-1] == 'S')) {
     		// remove 's
 	      	// Strip last 2 characters off
-	      	t.setLength(bufferLength - 2);
-	    } else if (type == ACRONYM_TYPE) {		  
-	    	// remove dots
-		    int upto = 0;
-		    for(int i=0;i<bufferLength;i++) {
-		      	char c = buffer[i];
-		      	if (c != '.')
-		        	buffer[upto++] = c;
-		    }
-		    t.setLength(upto);
+	      	bufferLength -= 2;
 	    }
-
-	    return t;
+	    
+	    // remove dots
+	    final boolean acronym = type == ACRONYM_TYPE;
+	    int upto = 0;
+	    for(int i=0;i<bufferLength;i++) {
+	    	char c = buffer[i];
+	    	if (acronym && c == '.') continue;
+	    	buffer[upto++] = normalizeWidth ? GrobidFilterTwoBytesLatinChars.normalize(c) : c;
+	    }
+	    termAttr.setLength(upto);
+	    posAttr.setPositionIncrement(1);
 	}
 	
 	private boolean isAlphaNumChar(int c) {
@@ -288,45 +349,53 @@ public final class KoreanFilter extends TokenFilter {
 	public void setHasOrigin(boolean has) {
 		hasOrigin = has;
 	}
+	
+	/**
+	 * Converts the full-width latin chars of the tokens which are not Korean words, as
+	 * {@link GrobidFilterTwoBytesLatinChars} does.
+	 */
+	public void setNormalizeWidth(boolean normalize) {
+		normalizeWidth = normalize;
+	}
+	
+	/**
+	 * The cache is only used in the FULL mode, the analyses of the other modes are not the same.
+	 */
+	public void setAnalysisCache(AnalysisCache cache) {
+		analysisCache = cache;
+	}
+	
+	/**
+	 * Sets the analysis of the Korean words, FULL by default. The DECOMPOUND mode returns all
+	 * the terms of a word which is not split, as returnOnlyOne=false.
+	 */
+	public void setAnalysisMode(KoreanAnalysisMode mode) {
+		this.mode = mode;
+		returnOnlyOne = mode!=KoreanAnalysisMode.DECOMPOUND;
+	}
+	
+	public KoreanAnalysisMode getAnalysisMode() {
+		return mode;
+	}
 
 	@Override
 	public boolean incrementToken() throws IOException {
-		if (koreanQueue.size()>0) {
-			Token t = (Token)koreanQueue.removeFirst();
-			termAttr.setEmpty(); termAttr.append(t.toString());
-			typeAttr.setType(t.type());
-			posAttr.setPositionIncrement(t.getPositionIncrement());
-			offsetAttr.setOffset(t.startOffset(),t.endOffset());
-			return true;
-		}
-		else if (cjQueue.size()>0) {
-			Token t = (Token)cjQueue.removeFirst();
-			termAttr.setEmpty(); termAttr.append(t.toString());
-			typeAttr.setType(t.type());
-			posAttr.setPositionIncrement(t.getPositionIncrement());
-			offsetAttr.setOffset(t.startOffset(),t.endOffset());
+		if (!koreanQueue.isEmpty()) {
+			koreanQueue.poll(termAttr, offsetAttr, typeAttr, posAttr);
 			return true;
 		}
 		
 	  	int skippedPositions = 0;
 		try {
 		    while(input.incrementToken()) {
-		    	Token t = new Token();
-		    	t.reinit(termAttr.toString(), offsetAttr.startOffset(), offsetAttr.endOffset(), typeAttr.type());
 		    	if (typeAttr.type().equals(KoreanTokenizer.TOKEN_TYPES[KoreanTokenizer.KOREAN])) {		    		
-		    		t = analysisKorean(t, skippedPositions);
+		    		if(!analysisKorean(skippedPositions)) {
+						skippedPositions++;			    		
+			    		continue;
+		    		}
 		    	} else {
-		    		t = analysisETC(t);
+		    		analysisETC(); // no morphological analysis
 		    	}
-
-		    	if(t==null) {
-					skippedPositions++;			    		
-		    		continue;
-		    	}
-		    	termAttr.setEmpty(); termAttr.append(t.toString());
-				typeAttr.setType(t.type());
-				posAttr.setPositionIncrement(t.getPositionIncrement());
-				offsetAttr.setOffset(t.startOffset(),t.endOffset());
 				return true;
 			}
 		} catch (MorphException e) {
@@ -340,7 +409,106 @@ public final class KoreanFilter extends TokenFilter {
   	@Override
   	public void reset() throws IOException {
 	    super.reset();
-	    cjQueue.clear();
 	    koreanQueue.clear();
+	    // the next document may be read by another thread
+	    morph = null;
+	    wsAnal = null;
   	}
+
+	/**
+	 * The tokens waiting to be returned, in a circular buffer. The term buffers are
+	 * reused from one token to the next.
+	 */
+	private static final class TokenQueue {
+
+		private char[][] terms = new char[4][];
+
+		private int[] lengths = new int[4];
+
+		private int[] startOffsets = new int[4];
+
+		private int[] endOffsets = new int[4];
+
+		private String[] types = new String[4];
+
+		private int[] positionIncrements = new int[4];
+
+		private int head = 0;
+
+		private int size = 0;
+
+		boolean isEmpty() {
+			return size==0;
+		}
+
+		void clear() {
+			head = 0;
+			size = 0;
+		}
+
+		/**
+		 * Adds a token with an empty term, see {@link #append(String)}.
+		 */
+		void add(int startOffset, int endOffset, String type, int positionIncrement) {
+			if (size==lengths.length) grow();
+			int i = (head+size)%lengths.length;
+			lengths[i] = 0;
+			startOffsets[i] = startOffset;
+			endOffsets[i] = endOffset;
+			types[i] = type;
+			positionIncrements[i] = positionIncrement;
+			size++;
+		}
+
+		/**
+		 * Appends a text to the term of the last token added (null is "null").
+		 */
+		void append(String text) {
+			text = String.valueOf(text);
+			int i = (head+size-1)%lengths.length;
+			int length = lengths[i]+text.length();
+			if (terms[i]==null || terms[i].length<length)
+				terms[i] = terms[i]==null ? new char[Math.max(16, length)] : Arrays.copyOf(terms[i], Math.max(terms[i].length*2, length));
+			text.getChars(0, text.length(), terms[i], lengths[i]);
+			lengths[i] = length;
+		}
+
+		/**
+		 * Removes the first token, written in the attributes.
+		 */
+		void poll(CharTermAttribute term, OffsetAttribute offset, TypeAttribute type, PositionIncrementAttribute pos) {
+			term.copyBuffer(terms[head], 0, lengths[head]);
+			offset.setOffset(startOffsets[head], endOffsets[head]);
+			type.setType(types[head]);
+			pos.setPositionIncrement(positionIncrements[head]);
+			head = (head+1)%lengths.length;
+			size--;
+		}
+
+		private void grow() {
+			int n = lengths.length;
+			char[][] t = new char[n*2][];
+			int[] l = new int[n*2];
+			int[] so = new int[n*2];
+			int[] eo = new int[n*2];
+			String[] ty = new String[n*2];
+			int[] pi = new int[n*2];
+			for (int k=0; k<size; k++) {
+				int i = (head+k)%n;
+				t[k] = terms[i];
+				l[k] = lengths[i];
+				so[k] = startOffsets[i];
+				eo[k] = endOffsets[i];
+				ty[k] = types[i];
+				pi[k] = positionIncrements[i];
+			}
+			terms = t;
+			lengths = l;
+			startOffsets = so;
+			endOffsets = eo;
+			types = ty;
+			positionIncrements = pi;
+			head = 0;
+		}
+	}
 }
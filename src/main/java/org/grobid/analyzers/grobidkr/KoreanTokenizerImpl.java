@@ -35,7 +35,13 @@ class KoreanTokenizerImpl {
   public static final int YYEOF = -1;
 
   /** initial size of the lookahead buffer */
-  private static final int ZZ_BUFFERSIZE = 16384;
+  private static final int ZZ_BUFFERSIZE = 4096;
+
+  /** 
+   * largest lookahead buffer kept by yyreset: a buffer grown beyond it
+   * for a long token is dropped at the next reset
+   */
+  private static final int ZZ_MAX_RETAINED_BUFFERSIZE = 0x10000;
 
   /** lexical states */
   public static final int YYINITIAL = 0;
@@ -65,9 +71,16 @@ class KoreanTokenizerImpl {
     "\75\10\43\0";
 
   /** 
-   * Translates characters to character classes
+   * Translates characters to character classes, first level:
+   * ZZ_CMAP_TOP[c>>8] is the offset of the block of c in ZZ_CMAP_BLOCKS
+   */
+  private static final char [] ZZ_CMAP_TOP = new char[0x100];
+
+  /** 
+   * Translates characters to character classes, second level: the distinct
+   * blocks of 256 classes, the class of c is ZZ_CMAP_BLOCKS[ZZ_CMAP_TOP[c>>8]|(c&0xFF)]
    */
-  private static final char [] ZZ_CMAP = zzUnpackCMap(ZZ_CMAP_PACKED);
+  private static final char [] ZZ_CMAP_BLOCKS = zzUnpackCMap(ZZ_CMAP_PACKED, ZZ_CMAP_TOP);
 
   /** 
    * Translates DFA states to action switch labels.
@@ -368,12 +381,13 @@ public final void getText(CharTermAttribute t) {
   }
 
   /** 
-   * Unpacks the compressed character translation table.
+   * Unpacks the compressed character translation table into a two-level table.
    *
    * @param packed   the packed character translation table
-   * @return         the unpacked character translation table
+   * @param top      receives the offset of the block of each high byte
+   * @return         the distinct blocks of the character translation table
    */
-  private static char [] zzUnpackCMap(String packed) {
+  private static char [] zzUnpackCMap(String packed, char [] top) {
     char [] map = new char[0x10000];
     int i = 0;  /* index in packed string  */
     int j = 0;  /* index in unpacked array */
@@ -382,7 +396,26 @@ public final void getText(CharTermAttribute t) {
       char value = packed.charAt(i++);
       do map[j++] = value; while (--count > 0);
     }
-    return map;
+    char [] blocks = new char[0x10000];
+    int size = 0;  /* end of the distinct blocks */
+    for (int hi = 0; hi < 0x100; hi++) {
+      int block = 0;
+      while (block < size && !zzSameBlock(blocks, block, map, hi<<8)) block += 0x100;
+      if (block == size) {
+        System.arraycopy(map, hi<<8, blocks, size, 0x100);
+        size += 0x100;
+      }
+      top[hi] = (char) block;
+    }
+    char [] result = new char[size];
+    System.arraycopy(blocks, 0, result, 0, size);
+    return result;
+  }
+
+  private static boolean zzSameBlock(char [] blocks, int block, char [] map, int start) {
+    for (int k = 0; k < 0x100; k++)
+      if (blocks[block+k] != map[start+k]) return false;
+    return true;
   }
 
 
@@ -410,9 +443,9 @@ public final void getText(CharTermAttribute t) {
 
     /* is the buffer big enough? */
     if (zzCurrentPos >= zzBuffer.length) {
-      /* if not: blow it up */
-      char newBuffer[] = new char[zzCurrentPos*2];
-      System.arraycopy(zzBuffer, 0, newBuffer, 0, zzBuffer.length);
+      /* if not: blow it up, at least doubling it so that a long token is copied O(1) times per char */
+      char newBuffer[] = new char[Math.max(zzBuffer.length*2, zzCurrentPos+1)];
+      System.arraycopy(zzBuffer, 0, newBuffer, 0, zzEndRead);
       zzBuffer = newBuffer;
     }
 
@@ -457,13 +490,17 @@ public final void getText(CharTermAttribute t) {
    * Does not close the old reader.
    *
    * All internal variables are reset, the old input stream 
-   * <b>cannot</b> be reused (internal buffer is discarded and lost).
+   * <b>cannot</b> be reused (the content of the internal buffer is lost).
+   * The buffer itself is kept for the next input, unless it grew beyond
+   * ZZ_MAX_RETAINED_BUFFERSIZE.
    * Lexical state is set to <tt>ZZ_INITIAL</tt>.
    *
    * @param reader   the new input stream 
    */
   public final void yyreset(java.io.Reader reader) {
     zzReader = reader;
+    if (zzBuffer.length > ZZ_MAX_RETAINED_BUFFERSIZE)
+      zzBuffer = new char[ZZ_BUFFERSIZE];
     zzAtBOL  = true;
     zzAtEOF  = false;
     zzEOFDone = false;
@@ -583,7 +620,8 @@ public final void getText(CharTermAttribute t) {
     int zzMarkedPosL;
     int zzEndReadL = zzEndRead;
     char [] zzBufferL = zzBuffer;
-    char [] zzCMapL = ZZ_CMAP;
+    char [] zzCMapTopL = ZZ_CMAP_TOP;
+    char [] zzCMapBlocksL = ZZ_CMAP_BLOCKS;
 
     int [] zzTransL = ZZ_TRANS;
     int [] zzRowMapL = ZZ_ROWMAP;
@@ -628,7 +666,7 @@ public final void getText(CharTermAttribute t) {
               zzInput = zzBufferL[zzCurrentPosL++];
             }
           }
-          int zzNext = zzTransL[ zzRowMapL[zzState] + zzCMapL[zzInput] ];
+          int zzNext = zzTransL[ zzRowMapL[zzState] + zzCMapBlocksL[zzCMapTopL[zzInput>>8]|(zzInput&0xFF)] ];
           if (zzNext == -1) break zzForAction;
           zzState = zzNext;
 
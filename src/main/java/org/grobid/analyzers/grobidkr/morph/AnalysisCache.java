@@ -0,0 +1,221 @@
+package org.grobid.analyzers.grobidkr.morph;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.grobid.analyzers.grobidkr.utils.DictionaryBundle;
+import org.grobid.analyzers.grobidkr.utils.DictionaryUtil;
+
+/**
+ * A bounded cache of the results of {@link MorphAnalyzer#analyze(String)}, keyed by the
+ * eojeol (어절) as it is given to the analyzer, so that a word which occurs again is not
+ * analyzed again.
+ * <p>
+ *
+ * The cache is thread-safe and can be shared by several analyzers: it is split into
+ * segments, each one a LinkedHashMap in access order behind its own lock, which evicts
+ * its least recently used word once it is full. The cached lists are unmodifiable and
+ * their AnalysisOutputs are shared by all the callers, so they must not be changed.
+ * <p>
+ *
+ * The results depend on the dictionary: each segment remembers the dictionary tables
+ * ({@link DictionaryBundle}) its words were analyzed with, and is emptied when they are
+ * replaced (a user dictionary is loaded...).
+ */
+public class AnalysisCache {
+
+	private final Segment[] segments;
+
+	private final int maxSize;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxSize	maximum number of words kept
+	 */
+	public AnalysisCache(int maxSize) {
+		if(maxSize<=0) throw new IllegalArgumentException("cache size must be positive: "+maxSize);
+		this.maxSize = maxSize;
+
+		// one segment per 256 words, at most 16 (a power of two)
+		int n = 1;
+		while(n<16&&n*2*256<=maxSize) n *= 2;
+		segments = new Segment[n];
+		int capacity = (maxSize+n-1)/n;
+		for(int i=0;i<n;i++) segments[i] = new Segment(capacity);
+	}
+
+	/**
+	 * @param word	the analyzed word
+	 * @return the cached results, or null if the word is not in the cache
+	 */
+	public List<AnalysisOutput> get(String word) {
+		DictionaryBundle bundle = currentBundle();
+		Segment segment = segmentFor(word);
+		List<AnalysisOutput> results;
+		synchronized(segment) {
+			segment.check(bundle);
+			results = segment.get(word);
+		}
+		if(results==null) misses.incrementAndGet();
+		else hits.incrementAndGet();
+		return results;
+	}
+
+	/**
+	 * Caches the results of a word.
+	 * @param word	the analyzed word
+	 * @param results	the results of MorphAnalyzer.analyze
+	 * @return the cached list: an unmodifiable view of results
+	 */
+	public List<AnalysisOutput> put(String word, List<AnalysisOutput> results) {
+		return put(word, results, currentBundle());
+	}
+
+	/**
+	 * @param analyzedWith	the dictionary tables when the analysis started
+	 */
+	private List<AnalysisOutput> put(String word, List<AnalysisOutput> results, DictionaryBundle analyzedWith) {
+		DictionaryBundle bundle = currentBundle();
+		List<AnalysisOutput> cached = Collections.unmodifiableList(results);
+		Segment segment = segmentFor(word);
+		synchronized(segment) {
+			segment.check(bundle);
+			// not cached if the dictionary was replaced during the analysis
+			if(bundle==analyzedWith) segment.put(word, cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Returns the results of a word, from the cache or else analyzed by morph and then cached.
+	 * @param word	the word, equal to buffer[offset..offset+length-1]
+	 */
+	public List<AnalysisOutput> analyze(MorphAnalyzer morph, String word, char[] buffer, int offset, int length) throws MorphException {
+		DictionaryBundle bundle = DictionaryUtil.getBundle();
+		List<AnalysisOutput> results = get(word);
+		if(results!=null) return results;
+		@SuppressWarnings("unchecked")
+		List<AnalysisOutput> analyzed = morph.analyze(buffer, offset, length);
+		return put(word, analyzed, bundle);
+	}
+
+	public void clear() {
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of words in the cache
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return hits / (hits + misses), 0 if the cache was never read
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h+misses.get();
+		return total==0 ? 0 : (double)h/total;
+	}
+
+	public String toString() {
+		return "AnalysisCache[size="+size()+"/"+maxSize+", hits="+hits.get()+", misses="+misses.get()
+				+", evictions="+evictions.get()+"]";
+	}
+
+	private static DictionaryBundle currentBundle() {
+		try {
+			return DictionaryUtil.getBundle();
+		} catch(MorphException e) {
+			return null;
+		}
+	}
+
+	private Segment segmentFor(String word) {
+		int h = word.hashCode();
+		h ^= (h>>>16);
+		return segments[h&(segments.length-1)];
+	}
+
+	private class Segment extends LinkedHashMap<String,List<AnalysisOutput>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		/** the dictionary the words were analyzed with */
+		private DictionaryBundle bundle;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Empties the segment if the dictionary was replaced since its words were analyzed.
+		 */
+		void check(DictionaryBundle current) {
+			if(bundle==current) return;
+			clear();
+			bundle = current;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<String,List<AnalysisOutput>> eldest) {
+			if(size()<=capacity) return false;
+			evictions.incrementAndGet();
+			return true;
+		}
+	}
+}
@@ -20,6 +20,12 @@ package org.grobid.analyzers.grobidkr.morph;
 import java.util.Comparator;
 
 public class AnalysisOutputComparator implements Comparator {
+	
+	/**
+	 * the comparator has no state, one instance is shared by all the sorts
+	 */
+	public static final AnalysisOutputComparator INSTANCE = new AnalysisOutputComparator();
+	
 	public int compare(Object o1, Object o2) {
 		
 		AnalysisOutput out1 = (AnalysisOutput)o1;
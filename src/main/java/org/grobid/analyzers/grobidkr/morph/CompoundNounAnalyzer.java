@@ -11,6 +11,13 @@ import org.grobid.analyzers.grobidkr.utils.DictionaryUtil;
 
 /**
  * 복합명사를 분해한다.
+ * <p>
+ *
+ * A word of 3 to 6 chars is split by templates. The entry of each span is memoized for the
+ * current word, so that a span is looked up in the dictionary only once, whatever the number
+ * of templates it appears in. A longer word is split by {@link #analyzeLongText(List, boolean)},
+ * a best path over the spans of the word, each one looked up once. A CompoundNounAnalyzer must
+ * not be shared between threads.
  * @author smlee
  *
  */
@@ -20,6 +27,29 @@ public class CompoundNounAnalyzer {
 	
 	private boolean exactMach  = true;
 	
+	/** the longest word split by templates */
+	private static final int MAX_TEMPLATE = 6;
+	
+	/**
+	 * the word being analyzed, the span [start,end) of which has the index start*width+end in the memos
+	 */
+	private String text;
+	
+	private char[] chars = new char[32];
+	
+	private int width;
+	
+	/** the span Strings, for the templates */
+	private final String[] words = new String[(MAX_TEMPLATE+1)*(MAX_TEMPLATE+1)];
+	
+	/** the span entries, see analyzeSingle, for the templates */
+	private final CompoundEntry[] singles = new CompoundEntry[(MAX_TEMPLATE+1)*(MAX_TEMPLATE+1)];
+	
+	/** the best paths of analyzeLongText: cost and start of the last span, by end and kind of the last span */
+	private long[] costs = new long[0];
+	
+	private int[] starts = new int[0];
+	
 	private static Pattern NUM_PATTERN;
 	static {
 		NUM_PATTERN = Pattern.compile("^[0-9\\.,]+$");
@@ -38,62 +68,91 @@ public class CompoundNounAnalyzer {
 		this.exactMach = exactMach;
 	}
 
-	public List analyze(String input) throws MorphException {
+	public List<CompoundEntry> analyze(String input) throws MorphException {
 		
 		return analyze(input,true);
 		
 	}
 	
-	public List analyze(String input, boolean isFirst) throws MorphException {
+	public List<CompoundEntry> analyze(String input, boolean isFirst) throws MorphException {
 		
 		int len = input.length();
-		if(len<3) return new ArrayList();	
-		
-		List outputs = new ArrayList();
-		
-		switch(len) {
-			case  3 :
-				analyze3Word(input,outputs,isFirst);
-				break;
-			case  4 :
-				analyze4Word(input,outputs,isFirst);
-				break;	
-			case  5 :
-				analyze5Word(input,outputs,isFirst);
-				break;
-			case  6 :
-				analyze6Word(input,outputs,isFirst);
-				break;	
-			default :
-				analyzeLongText(input,outputs,isFirst);				
+		List<CompoundEntry> outputs = new ArrayList<CompoundEntry>();
+		if(len<3) return outputs;	
+		
+		start(input);
+		try {
+			switch(len) {
+				case  3 :
+					analyze3Word(0,outputs,isFirst);
+					break;
+				case  4 :
+					analyze4Word(0,outputs,isFirst);
+					break;	
+				case  5 :
+					analyze5Word(0,outputs,isFirst);
+					break;
+				case  6 :
+					analyze6Word(0,outputs,isFirst);
+					break;	
+				default :
+					analyzeLongText(outputs,isFirst);				
+			}
+		} finally {
+			text = null;
 		}
-
 		return outputs;
-		
+	}
+	
+	/**
+	 * Starts the analysis of a word: the memos are emptied.
+	 */
+	private void start(String input) {
+		int len = input.length();
+		text = input;
+		if(chars.length<len) chars = new char[len];
+		input.getChars(0, len, chars, 0);
+		width = len+1;
+		if(len<=MAX_TEMPLATE) {
+			Arrays.fill(words, null);
+			Arrays.fill(singles, null);
+		}
+	}
+	
+	/**
+	 * @return the String of the span [start,end) of the word
+	 */
+	private String word(int start, int end) {
+		String word = words[start*width+end];
+		if(word==null) {
+			word = text.substring(start, end);
+			words[start*width+end] = word;
+		}
+		return word;
 	}
 		
-	private void analyze3Word(String input,List outputs, boolean isFirst) throws MorphException {
+	private void analyze3Word(int start,List<CompoundEntry> outputs, boolean isFirst) throws MorphException {
 
 		int[] units1 = {2,1};
-		CompoundEntry[] entries1 = analysisBySplited(units1,input,isFirst);
+		CompoundEntry[] entries1 = analysisBySplited(units1,start,isFirst);
 		if(entries1!=null && entries1[0].isExist()&&entries1[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries1));
 			return;		
 		}
 
 		int[] units2 = {1,2};
-		CompoundEntry[] entries2 = analysisBySplited(units2,input,isFirst);
+		CompoundEntry[] entries2 = analysisBySplited(units2,start,isFirst);
 		if(entries2!=null && entries2[0].isExist()&&entries2[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries2));
 		}
 					
 	}	
 	
-	private void analyze4Word(String input,List outputs, boolean isFirst) throws MorphException {
+	private void analyze4Word(int start,List<CompoundEntry> outputs, boolean isFirst) throws MorphException {
 	
 		if(!isFirst) {
 			int[] units0 = {1,3};
-			CompoundEntry[] entries0 = analysisBySplited(units0,input,isFirst);
+			CompoundEntry[] entries0 = analysisBySplited(units0,start,isFirst);
 			if(entries0!=null && entries0[0].isExist()&&entries0[1].isExist()) {
 				outputs.addAll(Arrays.asList(entries0));
 				return;		
@@ -101,14 +160,14 @@ public class CompoundNounAnalyzer {
 		}
 				
 		int[] units2 = {1,2,1};
-		CompoundEntry[] entries2 = analysisBySplited(units2,input,isFirst);	
+		CompoundEntry[] entries2 = analysisBySplited(units2,start,isFirst);	
 		if(entries2!=null && entries2[0].isExist()&&entries2[1].isExist()&&entries2[2].isExist()) {
 			outputs.addAll(Arrays.asList(entries2));	
 			return;
 		}
 		
 		int[] units1 = {2,2};
-		CompoundEntry[] entries1 = analysisBySplited(units1,input,isFirst);
+		CompoundEntry[] entries1 = analysisBySplited(units1,start,isFirst);
 		if(entries1!=null && entries1[0].isExist()&&entries1[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries1));		
 			return;		
@@ -119,38 +178,38 @@ public class CompoundNounAnalyzer {
 		}
 	}
 	
-	private void analyze5Word(String input,List outputs, boolean isFirst) throws MorphException {
+	private void analyze5Word(int start,List<CompoundEntry> outputs, boolean isFirst) throws MorphException {
 			
 		int[] units1 = {2,3};
-		CompoundEntry[] entries1 = analysisBySplited(units1,input,isFirst);
+		CompoundEntry[] entries1 = analysisBySplited(units1,start,isFirst);
 		if(entries1!=null && entries1[0].isExist()&&entries1[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries1));
 			return;		
 		}
 		
 		int[] units2 = {3,2};
-		CompoundEntry[] entries2 = analysisBySplited(units2,input,isFirst);
+		CompoundEntry[] entries2 = analysisBySplited(units2,start,isFirst);
 		if(entries2!=null && entries2[0].isExist()&&entries2[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries2));
 			return;		
 		}
 		
 		int[] units_1 = {4,1};
-		CompoundEntry[] entries_1 = analysisBySplited(units_1,input,isFirst);
+		CompoundEntry[] entries_1 = analysisBySplited(units_1,start,isFirst);
 		if(entries_1!=null && entries_1[0].isExist()&&entries_1[1].isExist()) {			
 			outputs.addAll(Arrays.asList(entries_1));
 			return;		
 		}
 		
 		int[] units3 = {2,2,1};
-		CompoundEntry[] entries3 = analysisBySplited(units3,input,isFirst);
+		CompoundEntry[] entries3 = analysisBySplited(units3,start,isFirst);
 		if(entries3!=null && entries3[0].isExist()&&entries3[1].isExist()&&entries3[2].isExist()) {			
 			outputs.addAll(Arrays.asList(entries3));
 			return;
 		}
 		
 		int[] units4 = {2,1,2};
-		CompoundEntry[] entries4 = analysisBySplited(units4,input,isFirst);
+		CompoundEntry[] entries4 = analysisBySplited(units4,start,isFirst);
 		if(entries4!=null && entries4[0].isExist()&&entries4[1].isExist()&&entries4[2].isExist()) {			
 			outputs.addAll(Arrays.asList(entries4));
 			return;
@@ -175,52 +234,52 @@ public class CompoundNounAnalyzer {
 		}			
 	}
 	
-	private void analyze6Word(String input,List outputs, boolean isFirst) throws MorphException {
+	private void analyze6Word(int start,List<CompoundEntry> outputs, boolean isFirst) throws MorphException {
 		
 		int[] units3 = {2,4};
-		CompoundEntry[] entries3 = analysisBySplited(units3,input,isFirst);
+		CompoundEntry[] entries3 = analysisBySplited(units3,start,isFirst);
 		if(entries3!=null && entries3[0].isExist()&&entries3[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries3));
 			return;		
 		}
 		
 		int[] units4 = {4,2};
-		CompoundEntry[] entries4 = analysisBySplited(units4,input,isFirst);
+		CompoundEntry[] entries4 = analysisBySplited(units4,start,isFirst);
 		if(entries4!=null && entries4[0].isExist()&&entries4[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries4));
 			return;		
 		}
 		
 		int[] units2 = {3,3};
-		CompoundEntry[] entries2 = analysisBySplited(units2,input,isFirst);
+		CompoundEntry[] entries2 = analysisBySplited(units2,start,isFirst);
 		if(entries2!=null && entries2[0].isExist()&&entries2[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries2));
 			return;		
 		}
 		
 		int[] units6 = {3,2,1};
-		CompoundEntry[] entries6 = analysisBySplited(units6,input,isFirst);
+		CompoundEntry[] entries6 = analysisBySplited(units6,start,isFirst);
 		if(entries6!=null && entries6[0].isExist()&&entries6[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries6));
 			return;		
 		}
 		
 		int[] units7 = {2,3,1};
-		CompoundEntry[] entries7 = analysisBySplited(units7,input,isFirst);
+		CompoundEntry[] entries7 = analysisBySplited(units7,start,isFirst);
 		if(entries7!=null && entries7[0].isExist()&&entries7[1].isExist()) {
 			outputs.addAll(Arrays.asList(entries7));
 			return;		
 		}
 		
 		int[] units1 = {2,2,2};
-		CompoundEntry[] entries1 = analysisBySplited(units1,input,isFirst);
+		CompoundEntry[] entries1 = analysisBySplited(units1,start,isFirst);
 		if(entries1!=null && entries1[0].isExist()&&entries1[1].isExist()&&entries1[2].isExist()) {
 			outputs.addAll(Arrays.asList(entries1));
 			return;		
 		}				
 		
 		int[] units5 = {2,1,2,1};
-		CompoundEntry[] entries5 = analysisBySplited(units5,input,isFirst);
+		CompoundEntry[] entries5 = analysisBySplited(units5,start,isFirst);
 		if(entries5!=null && entries5[0].isExist()&&entries5[1].isExist()&&entries5[2].isExist()&&entries5[3].isExist()) {
 			outputs.addAll(Arrays.asList(entries5));
 			return;		
@@ -247,113 +306,117 @@ public class CompoundNounAnalyzer {
 			
 	}
 	
-	private void analyzeLongText(String input,List outputs, boolean isFirst) throws MorphException {
-	
-		int pos = input.length()/2;
-		if(input.length()%2==1) pos++;
-		
-		if(input.length()>20) return; // 20글자 이상의 복합명사는 무시함.
-		
-		int score = 0;
-		List results = new ArrayList();
-		boolean hasContain = false;
+	/**
+	 * Splits a word longer than the templates: the best path over its spans, the spans being
+	 * dictionary words (found in one walk of the dictionary from each position), single chars
+	 * (a prefix at the start of a first word, a suffix elsewhere) and unknown parts of 2 chars
+	 * or more. The best path has the fewest unknown chars, an unknown part counting as 2 more
+	 * chars and a single char before the end as 1, then the fewest parts, then the longest known
+	 * parts (the largest sum of their squared lengths), and at least 2 parts. Consecutive parts
+	 * are checked against the uncompounds as by the templates (validCompound), the unknown parts
+	 * excepted.
+	 * The word is left unsplit if no dictionary word is found in it.
+	 * 
+	 * The spans are looked up once each and the path keeps, for each end, the best cost of
+	 * the paths whose last part is a single char and of the other ones: O(n^2) for a word of
+	 * n chars.
+	 */
+	private void analyzeLongText(List<CompoundEntry> outputs, boolean isFirst) throws MorphException {
 		
-		for(int i=pos;i>=2;i--) {
-			
-			String prev = input.substring(0,i);
-			String rear = input.substring(i);
-			
-			List<CompoundEntry> candidates = new ArrayList();
+		int n = width-1;
+		if(costs.length<2*width) {
+			costs = new long[2*width];
+			starts = new int[2*width];
+		}
+		Arrays.fill(costs, 0, 2*width, Long.MAX_VALUE);
+		costs[0] = 0;
+		
+		// cost of a path: 1 per unknown char, 2 more per unknown part and 1 per single char
+		// before the end, then 1 per part, then minus the square of the length of each known part
+		long part = (long)n*n+1;
+		long unknown = part*(n+1);
+		boolean found = false;
+		
+		for(int i=0;i<n;i++) {
+			// the best paths to i: the last part is not a single char, or it is one which is
+			// not the first part and must not be an uncompound with the next part
+			long other = costs[2*i];
+			long afterOne = costs[2*i+1];
+			if(other==Long.MAX_VALUE&&afterOne==Long.MAX_VALUE) continue;
+			boolean check = i>1&&afterOne!=Long.MAX_VALUE;
 			
-			CompoundEntry prevEntry = analyzeSingle(prev);
-			if(prevEntry.isExist()) {
-				candidates.add(prevEntry);
-			} else {
-				List list = analyze(prev, true);
-				if(list.size()==0) {
-					candidates.add(prevEntry);
-				} else {
-					candidates.addAll(list);
-				}
+			// a single char
+			if(i==0 ? isFirst&&DictionaryUtil.existPrefix(chars,0,1) : DictionaryUtil.existSuffix(chars,i,1)) {
+				relax(i, i+1, 1, other, !check||validPair(i-1,i,i+1) ? afterOne : Long.MAX_VALUE, (i+1<n ? unknown : 0)+part);
 			}
 			
-			CompoundEntry e = candidates.get(candidates.size()-1);		
-			if(!hasContain&&containWord(e.getWord(),input,i)) {
-				i -= e.getWord().length()-1;
-				hasContain=true;
-				continue;
-			}
-
-			CompoundEntry rearEntry = analyzeSingle(rear);
-			if(rearEntry.isExist()||rear.length()==3) {
-				candidates.add(rearEntry);
-			} else {
-				List<CompoundEntry> list = analyze(rear, false);
-				
-				if(list.size()==0) {
-					if(!e.isExist())
-						candidates.set(candidates.size()-1, analyzeSingle(e.getWord()+rearEntry.getWord()));
-					else
-						candidates.add(rearEntry);
-				} else {
-					if(!e.isExist()) 
-						candidates.set(candidates.size()-1, analyzeSingle(e.getWord()+list.remove(0).getWord()));
-					candidates.addAll(list);
-				}
+			// the dictionary words
+			for(int j=i+2;j<=n&&DictionaryUtil.hasPrefix(chars,i,j-i);j++) {
+				if(i==0&&j==n) continue;
+				if(DictionaryUtil.getWordExceptVerb(chars,i,j-i)==null) continue;
+				if(i>0&&!validRear(i,j)) continue;
+				found = true;
+				relax(i, j, 0, other, !check||validPair(i-1,i,j) ? afterOne : Long.MAX_VALUE, part-(j-i)*(j-i));
 			}
 			
-			int eval = evaluation(candidates);
-
-			if(results==null || score<eval || 
-					(score==eval && results.size()>candidates.size()) )  {
-				results = candidates;
-				score = eval;
+			// the unknown parts
+			for(int j=i+2;j<=n;j++) {
+				if(i==0&&j==n) continue;
+				relax(i, j, 0, other, afterOne, (j-i+2)*unknown+part);
 			}
-	
-			if(eval==110) break;
 		}
-
-		outputs.addAll(results);
 		
-	}
-	
-	private int evaluation(List<CompoundEntry> candidates) {
+		if(!found) return;
 		
-		int eval = 10;
-		
-		int one = 0;
-		int exist = 0;		
-		
-		for(CompoundEntry entry : candidates) {
-			if(entry.getWord().length()==1) one++;
-			if(entry.isExist()) exist++;
+		int last = outputs.size();
+		int kind = costs[2*n+1]<costs[2*n] ? 1 : 0;
+		for(int end=n;end>0;) {
+			int from = starts[2*end+kind];
+			int begin = from>>1;
+			outputs.add(last, analyzeSingle(text.substring(begin,end)));
+			end = begin;
+			kind = from&1;
 		}
-		
-		if(one>3) return eval;
-		
-		eval = eval + (exist*100)/candidates.size() - (one*100)/candidates.size();
-		
-		return eval;
 	}
 	
-	private boolean containWord(String before, String input, int pos) throws MorphException {
-		
-		String prev = null;
-		for(int i=pos;i<input.length();i++) {
-			
-			String text = before+input.substring(pos,i+1);		
-			if(DictionaryUtil.findWithPrefix(text).hasNext()) {
-				prev = text;
-				continue;
-			}
-			
-			if(prev!=null&&DictionaryUtil.getNoun(prev)!=null) return true;
-			
-			break;
+	/**
+	 * Keeps the path to end through the part [start,end) if it is the best one of its kind.
+	 * @param kind	1 if the part is a single char
+	 * @param other	the cost of the best path to start, the last part of which is not a single char
+	 * @param afterOne	the cost of the best path to start, the last part of which is a single char
+	 * (Long.MAX_VALUE for none)
+	 */
+	private void relax(int start, int end, int kind, long other, long afterOne, long cost) {
+		int from = afterOne<other ? 1 : 0;
+		long total = Math.min(other, afterOne);
+		if(total==Long.MAX_VALUE) return;
+		total += cost;
+		if(total<costs[2*end+kind]) {
+			costs[2*end+kind] = total;
+			starts[2*end+kind] = 2*start+from;
 		}
-
-		return false;
-		
+	}
+	
+	/**
+	 * Same as validCompound for the single char [start,mid) followed by [mid,end), not first parts.
+	 */
+	private boolean validPair(int start, int mid, int end) throws MorphException {
+		WordEntry entry = DictionaryUtil.getUncompound(text.substring(start,end));
+		if(entry==null) return true;
+		List<CompoundEntry> compounds = entry.getCompounds();
+		return !(text.substring(start,mid).equals(compounds.get(0).getWord())&&
+				text.substring(mid,end).equals(compounds.get(1).getWord()));
+	}
+	
+	/**
+	 * Same as validCompound for the word [start,end) after another part.
+	 */
+	private boolean validRear(int start, int end) throws MorphException {
+		String rear = text.substring(start,end);
+		WordEntry entry = DictionaryUtil.getUncompound(rear);
+		if(entry==null) return true;
+		List<CompoundEntry> compounds = entry.getCompounds();
+		return !("*".equals(compounds.get(0).getWord())&&rear.equals(compounds.get(1).getWord()));
 	}
 	
 //	private void analyzeLongText(String input,List outputs, boolean isFirst) throws MorphException {
@@ -469,23 +532,23 @@ public class CompoundNounAnalyzer {
 //		
 //	}
 	
-	private CompoundEntry[] analysisBySplited(int[] units, String input, boolean isFirst) throws MorphException {
+	private CompoundEntry[] analysisBySplited(int[] units, int start, boolean isFirst) throws MorphException {
 	
 		CompoundEntry[] entries = new CompoundEntry[units.length];
 		
-		int pos = 0;
-		String prev = null;
+		int pos = start;
+		int prev = -1;
 		
 		for(int i=0;i<units.length;i++) {
 			
-			String str = input.substring(pos,pos+units[i]);
+			int end = pos+units[i];
 
-			if(i!=0&&!validCompound(prev,str,isFirst&&(i==1),i)) return null;
+			if(i!=0&&!validCompound(prev,pos,end,isFirst&&(i==1),i)) return null;
 			
-			entries[i] = analyzeSingle(str); // CompoundEntry 로 변환
+			entries[i] = analyzeSingle(pos,end); // CompoundEntry 로 변환
 
-			pos += units[i];
-			prev = str;
+			prev = pos;
+			pos = end;
 		}
 		
 		return entries;
@@ -504,6 +567,18 @@ public class CompoundNounAnalyzer {
 		return true;
 	}
 	
+	/**
+	 * The entry of the span [start,end) of the word, built once.
+	 */
+	private CompoundEntry analyzeSingle(int start, int end) throws MorphException {
+		CompoundEntry entry = singles[start*width+end];
+		if(entry==null) {
+			entry = analyzeSingle(word(start,end));
+			singles[start*width+end] = entry;
+		}
+		return entry;
+	}
+	
 	/**
 	 * 입력된 String 을 CompoundEntry 로 변환
 	 * @param input
@@ -531,28 +606,34 @@ public class CompoundNounAnalyzer {
 		
 	}
 	
-	private boolean validCompound(String before, String after, boolean isFirst, int pos) throws MorphException {
+	/**
+	 * @param start	the span [start,mid) is before, [mid,end) after
+	 */
+	private boolean validCompound(int start, int mid, int end, boolean isFirst, int pos) throws MorphException {
 
-		if(pos==1&&before.length()==1&&(!isFirst||!DictionaryUtil.existPrefix(before))) return false;		
+		int blen = mid-start;
+		int alen = end-mid;
+		
+		if(pos==1&&blen==1&&(!isFirst||!DictionaryUtil.existPrefix(chars,start,1))) return false;		
 
-		if(after.length()==1&&!DictionaryUtil.existSuffix(after)) return false;
+		if(alen==1&&!DictionaryUtil.existSuffix(chars,mid,1)) return false;
 
-		if(pos!=1&&before.length()==1) {
+		if(pos!=1&&blen==1) {
 			
-			WordEntry entry1 = DictionaryUtil.getUncompound(before+after);	
+			WordEntry entry1 = DictionaryUtil.getUncompound(word(start,end));	
 			if(entry1!=null){
 				List<CompoundEntry> compounds = entry1.getCompounds();
-				if(before.equals(compounds.get(0).getWord())&&
-						after.equals(compounds.get(1).getWord())) return false;
+				if(word(start,mid).equals(compounds.get(0).getWord())&&
+						word(mid,end).equals(compounds.get(1).getWord())) return false;
 			}
 			
 		}
 
-		WordEntry entry2 = after.length()==1 ? null : DictionaryUtil.getUncompound(after);
+		WordEntry entry2 = alen==1 ? null : DictionaryUtil.getUncompound(word(mid,end));
 		if(entry2!=null){
 			List<CompoundEntry> compounds = entry2.getCompounds();			
 			if("*".equals(compounds.get(0).getWord())&&
-					after.equals(compounds.get(1).getWord())) return false;
+					word(mid,end).equals(compounds.get(1).getWord())) return false;
 		}
 		
 		return true;
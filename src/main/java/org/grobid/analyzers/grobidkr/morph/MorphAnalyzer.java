@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.grobid.analyzers.grobidkr.utils.MorphUtil;
 import org.grobid.analyzers.grobidkr.utils.NounUtil;
@@ -52,18 +53,66 @@ public class MorphAnalyzer {
 	 */
 	public static final int POS_END = 3;
 
-	private static final boolean TRYTOGETCOMPOUND = false;
 
 	private static final Object[] koreanWordsToLeaveAsItIs = {"고양이"};		
 	
-	private CompoundNounAnalyzer cnAnalyzer = new CompoundNounAnalyzer();	
+	/** created with the first compound noun to confirm */
+	private CompoundNounAnalyzer cnAnalyzer;
+	
+	private boolean exactCompound = false;
+	
+	/**
+	 * whether a noun which is not found is returned with its compound nouns, see {@link #setTryCompound(boolean)}
+	 */
+	private boolean tryCompound = false;
+	
+	/**
+	 * candidates of the current analysis, reused from one analysis to the next
+	 * (a MorphAnalyzer must not be shared between threads)
+	 */
+	private final List<AnalysisOutput> candidates = new ArrayList<AnalysisOutput>();
+	
+	/**
+	 * the josas and eomis ending the current word, see DictionaryUtil.findEndings
+	 */
+	private final long[] endings = new long[2];
+	
+	/**
+	 * number of MorphAnalyzers created, see {@link #getInstanceCount()}
+	 */
+	private static final AtomicLong instanceCount = new AtomicLong();
 	
 	public MorphAnalyzer() {
-		cnAnalyzer.setExactMach(false);
+		instanceCount.incrementAndGet();
+	}
+	
+	/**
+	 * @return the number of MorphAnalyzers created so far: through {@link MorphComponents},
+	 * it grows with the number of threads, not with the number of documents
+	 */
+	public static long getInstanceCount() {
+		return instanceCount.get();
 	}
 	
 	public void setExactCompound(boolean is) {
-		cnAnalyzer.setExactMach(is);
+		exactCompound = is;
+		if(cnAnalyzer!=null) cnAnalyzer.setExactMach(is);
+	}
+	
+	/**
+	 * When no analysis is correct, returns the noun with the most compound nouns found
+	 * in the dictionary (false by default).
+	 */
+	public void setTryCompound(boolean is) {
+		tryCompound = is;
+	}
+	
+	private CompoundNounAnalyzer compoundNounAnalyzer() {
+		if(cnAnalyzer==null) {
+			cnAnalyzer = new CompoundNounAnalyzer();
+			cnAnalyzer.setExactMach(exactCompound);
+		}
+		return cnAnalyzer;
 	}
 	
 	public List analyze(String input) throws MorphException {	
@@ -74,6 +123,163 @@ public class MorphAnalyzer {
 		return analyze(input, POS_MID);
 	}
 	
+	/**
+	 * Analyzes the word buffer[offset..offset+length-1], for example the buffer of a
+	 * CharTermAttribute. Same as analyze(String), but the split points of the word are
+	 * tested over the buffer, so that no substring is built for the ones which cannot
+	 * end with a josa or an eomi.
+	 * @return the results, in the same order as analyze(String)
+	 */
+	public List analyze(char[] buffer, int offset, int length) throws MorphException {	
+
+		if(length>0&&buffer[offset+length-1]=='.')
+			return analyze(new String(buffer, offset, length-1), buffer, offset, length-1, POS_END);
+		
+		return analyze(new String(buffer, offset, length), buffer, offset, length, POS_MID);
+	}
+	
+	/**
+	 * Analyzes the word buffer[offset..offset+length-1] for the FAST mode: only the splits
+	 * of the word into a stem and a josa or an eomi are looked for, and the best one is
+	 * taken in one pass, without sorting the candidates nor confirming the compound nouns.
+	 * @return the best analysis if it is a split of the word, else an empty list
+	 */
+	public List<AnalysisOutput> analyzeSplit(char[] buffer, int offset, int length) throws MorphException {
+		
+		// a word ending with a dot is analyzed without it, it cannot be a split of the word
+		if(length==0||buffer[offset+length-1]=='.') return Collections.emptyList();
+		
+		String input = new String(buffer, offset, length);
+		if (Arrays.binarySearch(koreanWordsToLeaveAsItIs, input) >= 0) return Collections.emptyList();
+		
+		candidates.clear();
+		try {
+			analysisByRule(input, buffer, offset, length, candidates);
+			// a word of the dictionary is not split
+			if(!MorphUtil.hasVerbOnly(input)||candidates.size()==0) addSingleWord(input,candidates);
+			
+			AnalysisOutput best = null;
+			for(AnalysisOutput o:candidates) {
+				if(o.getScore()==AnalysisOutput.SCORE_FAIL) continue;
+				if(best==null||AnalysisOutputComparator.INSTANCE.compare(o, best)<0) best = o;
+			}
+			return best==null||!isSplit(best, input) ? Collections.<AnalysisOutput>emptyList() : Collections.singletonList(best);
+		} finally {
+			candidates.clear();
+		}
+	}
+	
+	/**
+	 * Returns the first output of {@link #analyze(char[], int, int)} which splits the word
+	 * buffer[offset..offset+length-1] into its stem and josa, or its stem, vsfx and eomi: the
+	 * output KoreanFilter takes in the FULL mode.
+	 * <p>
+	 *
+	 * When the best correct split of the candidates cannot be preceded in the results by
+	 * another one, whatever the compound nouns confirmed, it is returned at once: the
+	 * candidates are not sorted, their compound nouns are not confirmed and no result list
+	 * is built. Otherwise the results are selected as in analyze.
+	 * @return the output, or null if no output splits the word
+	 */
+	public AnalysisOutput analyzeFirst(char[] buffer, int offset, int length) throws MorphException {
+		
+		String input = new String(buffer, offset, length);
+		if(length>0&&buffer[offset+length-1]=='.') {
+			// analyzed without the dot
+			for(Object o:analyze(buffer, offset, length))
+				if(isSplit((AnalysisOutput) o, input)) return (AnalysisOutput) o;
+			return null;
+		}
+		if (Arrays.binarySearch(koreanWordsToLeaveAsItIs, input) >= 0) return null;
+		
+		candidates.clear();
+		try {
+			generate(input, buffer, offset, length);
+			
+			// the results are candidates, and confirmCNoun never makes a split
+			boolean split = false;
+			for(AnalysisOutput o:candidates) {
+				if(isSplit(o, input)) {
+					split = true;
+					break;
+				}
+			}
+			if(!split) return null;
+			
+			AnalysisOutput first = firstCorrectSplit(input);
+			if(first!=null) return first;
+			
+			List<AnalysisOutput> results = new ArrayList<AnalysisOutput>();
+			select(results);
+			for(AnalysisOutput o:results)
+				if(isSplit(o, input)) return o;
+			return null;
+		} finally {
+			candidates.clear();
+		}
+	}
+	
+	/**
+	 * Finds the best correct split of the candidates, and checks that select() would give it
+	 * first among the splits: no other candidate has its stem and pos (the results keep one
+	 * output per stem and pos), and no candidate which may come before it, once its compound
+	 * nouns are confirmed, is a split or would leave out a noun split with compound nouns.
+	 * confirmCNoun can make a candidate correct and remove the last char of its stem, it never
+	 * makes a split.
+	 * @return the split, or null if the results must be selected
+	 */
+	private AnalysisOutput firstCorrectSplit(String word) {
+		
+		AnalysisOutput first = null;
+		for(AnalysisOutput o:candidates) {
+			if(o.getScore()==AnalysisOutput.SCORE_CORRECT&&isSplit(o, word)&&
+					(first==null||AnalysisOutputComparator.INSTANCE.compare(o, first)<0)) first = o;
+		}
+		if(first==null||first.getPatn()==PatternConstants.PTN_N||first.getPatn()==PatternConstants.PTN_AID) return null;
+		
+		String stem = first.getStem();
+		boolean withCNouns = first.getPos()==PatternConstants.POS_NOUN&&first.getCNounList().size()>0;
+		for(AnalysisOutput o:candidates) {
+			if(o==first) continue;
+			
+			if(o.getPos()==first.getPos()&&o.getStem().startsWith(stem)&&o.getStem().length()<=stem.length()+1) return null;
+			
+			boolean correct = o.getScore()==AnalysisOutput.SCORE_CORRECT;
+			boolean confirmable = !correct&&o.getPatn()<=PatternConstants.PTN_VM&&o.getStem().length()>2;
+			if(!correct&&!confirmable) continue;
+			if(!mayComeBefore(o, confirmable ? o.getStem().length()-1 : o.getStem().length(), first)) continue;
+			
+			if(isSplit(o, word)) return null;
+			// a correct output which is not a noun: the noun splits with compound nouns are left out
+			if(withCNouns&&o.getPos()!=PatternConstants.POS_NOUN) return null;
+		}
+		return first;
+	}
+	
+	/**
+	 * @return true if the correct output o, with a stem of the given length, may be sorted before first
+	 * (equal outputs included)
+	 */
+	private static boolean mayComeBefore(AnalysisOutput o, int stemLength, AnalysisOutput first) {
+		if(o.getPatn()==PatternConstants.PTN_N||o.getPatn()==PatternConstants.PTN_AID) return true;
+		return o.getPatn()>first.getPatn()||(o.getPatn()==first.getPatn()&&stemLength<=first.getStem().length());
+	}
+	
+	/**
+	 * @return true if the word is the stem followed by the josa, or by the vsfx and the eomi
+	 * (a missing part being "null", as KoreanFilter compares them)
+	 */
+	private static boolean isSplit(AnalysisOutput o, String word) {
+		String stem = o.getStem();
+		if(stem.length()>=word.length()||!word.startsWith(stem)) return false;
+		int n = stem.length();
+		String josa = String.valueOf(o.getJosa());
+		if(n+josa.length()==word.length()&&word.startsWith(josa, n)) return true;
+		String vsfx = String.valueOf(o.getVsfx());
+		String eomi = String.valueOf(o.getEomi());
+		return n+vsfx.length()+eomi.length()==word.length()&&word.startsWith(vsfx, n)&&word.endsWith(eomi);
+	}
+	
 	/**
 	 * 
 	 * @param input
@@ -82,20 +288,53 @@ public class MorphAnalyzer {
 	 * @throws MorphException
 	 */
 	public List analyze(String input, int pos) throws MorphException {		
+		return analyze(input, input.toCharArray(), 0, input.length(), pos);
+	}
+	
+	/**
+	 * @param input	the word, equal to buffer[offset..offset+length-1]
+	 */
+	private List analyze(String input, char[] buffer, int offset, int length, int pos) throws MorphException {		
 
 		List<AnalysisOutput> results = new ArrayList(); // BP delcared here because it could be null
 		if (Arrays.binarySearch(koreanWordsToLeaveAsItIs, input) >= 0) {
 			// skip this word: it's blaklisted!
 		} else {
+			candidates.clear();
+			try {
+				generate(input, buffer, offset, length);
+				
+				select(results);
+			} finally {
+				candidates.clear();
+			}
+		}
+		if(results.size()==0) {
+			AnalysisOutput output = new AnalysisOutput(input, null, null, PatternConstants.PTN_N, AnalysisOutput.SCORE_ANALYSIS);
+			output.setPos(PatternConstants.POS_NOUN);
+			results.add(output);
+		}
 		
-		List<AnalysisOutput> candidates = new ArrayList();				
+		return results;
+	}
+	
+	/**
+	 * Fills the candidates of the word: the analyses by rule, and the word itself.
+	 */
+	private void generate(String input, char[] buffer, int offset, int length) throws MorphException {
 		boolean isVerbOnly = MorphUtil.hasVerbOnly(input);
 
-		analysisByRule(input, candidates);		
+		analysisByRule(input, buffer, offset, length, candidates);		
 		
 		if(!isVerbOnly||candidates.size()==0) addSingleWord(input,candidates);
+	}
+	
+	/**
+	 * Sorts the candidates, confirms their compound nouns and selects the results.
+	 */
+	private void select(List<AnalysisOutput> results) throws MorphException {
 	//Sort by score : highest scores first
-		Collections.sort(candidates,new AnalysisOutputComparator());
+		Collections.sort(candidates,AnalysisOutputComparator.INSTANCE);
 		
 		// 복합명사 분해여부 결정하여 분해
 		boolean changed = false;
@@ -116,7 +355,7 @@ public class MorphAnalyzer {
 		
 		}
 		
-		if(changed) Collections.sort(candidates,new AnalysisOutputComparator());	
+		if(changed) Collections.sort(candidates,AnalysisOutputComparator.INSTANCE);	
 
 			
 		
@@ -154,7 +393,7 @@ public class MorphAnalyzer {
 				}
 				hasCorrectNoun=true;
 //				if(o.getCNounList().size()>0) correctCnoun = true;
-			}else if(TRYTOGETCOMPOUND && o.getPos()==PatternConstants.POS_NOUN&&o.getCNounList().size()>0&&!hasCorrect&&!hasCorrectNoun) {
+			}else if(tryCompound && o.getPos()==PatternConstants.POS_NOUN&&o.getCNounList().size()>0&&!hasCorrect&&!hasCorrectNoun) {
 				double curatio = NounUtil.countFoundNouns(o);
 				if(ratio<curatio&&(compound==null||(compound!=null&&compound.getJosa()==null))) {
 					ratio  = curatio;
@@ -168,43 +407,56 @@ public class MorphAnalyzer {
 		}	
 		
 		if(compound!=null) addResults(compound,results,stems);
-		}
-		if(results.size()==0) {
-			AnalysisOutput output = new AnalysisOutput(input, null, null, PatternConstants.PTN_N, AnalysisOutput.SCORE_ANALYSIS);
-			output.setPos(PatternConstants.POS_NOUN);
-			results.add(output);
-		}
-		
-		return results;
 	}
 	
-	private void analysisByRule(String input, List candidates) throws MorphException {
+	/**
+	 * Tries every split point of the word, from the end. The josa and eomi of a split point
+	 * are first looked up over the buffer, the stem and ending Strings are only built when
+	 * one of them may succeed.
+	 */
+	private void analysisByRule(String input, char[] buffer, int offset, int length, List candidates) throws MorphException {
 	
 		boolean josaFlag = true;
 		boolean eomiFlag = true;
 				
-		int strlen = input.length();
+		int strlen = length;
 		
 //		boolean isVerbOnly = MorphUtil.hasVerbOnly(input);
 		boolean isVerbOnly = false;
 		analysisWithEomi(input,"",candidates);
 		
+		// the josas and eomis ending the word, found in one walk: bit k for the last k chars
+		DictionaryUtil.findEndings(buffer, offset, length, endings);
+		long josas = endings[0];
+		long eomis = endings[1];
+		
 		for(int i=strlen-1;i>0;i--) {
 			
-			String stem = input.substring(0,i);
-			String eomi = input.substring(i);
-
-			char[] feature =  SyllableUtil.getFeature(eomi.charAt(0));		
-			if(!isVerbOnly&&josaFlag&&feature[SyllableUtil.IDX_JOSA1]=='1') {				
-				analysisWithJosa(stem,eomi,candidates);
-			}
+			int k = strlen-i;
+			// no longer ending: the remaining split points cannot be analyzed
+			if(strlen<64&&((josas|eomis)>>>k)==0&&(k!=1||buffer[offset+i]!='여')) break;
 			
-			if(eomiFlag) {			
-				analysisWithEomi(stem,eomi,candidates);
-			}			
+			long feature =  SyllableUtil.getFeatureBits(buffer[offset+i]);
+			boolean withJosa = !isVerbOnly&&josaFlag&&SyllableUtil.isSet(feature,SyllableUtil.IDX_JOSA1)&&
+					(k<64 ? (josas>>>k&1)!=0 : DictionaryUtil.existJosa(buffer, offset+i, k));
+			boolean withEomi = eomiFlag&&
+					(k<64 ? (eomis>>>k&1)!=0||(k==1&&buffer[offset+i]=='여') : EomiUtil.maySplitEomi(buffer, offset+i, k));
 			
-			if(josaFlag&&feature[SyllableUtil.IDX_JOSA2]=='0') josaFlag = false;
-			if(eomiFlag&&feature[SyllableUtil.IDX_EOMI2]=='0') eomiFlag = false;
+			if(withJosa||withEomi) {
+				String stem = input.substring(0,i);
+				String eomi = input.substring(i);
+				
+				if(withJosa) {				
+					analysisWithJosa(stem,eomi,candidates);
+				}
+				
+				if(withEomi) {			
+					analysisWithEomi(stem,eomi,candidates);
+				}
+			}
+			
+			if(josaFlag&&!SyllableUtil.isSet(feature,SyllableUtil.IDX_JOSA2)) josaFlag = false;
+			if(eomiFlag&&!SyllableUtil.isSet(feature,SyllableUtil.IDX_EOMI2)) eomiFlag = false;
 			
 			if(!josaFlag&&!eomiFlag) break;
 		}
@@ -277,10 +529,12 @@ public class MorphAnalyzer {
 		output.setPos(PatternConstants.POS_NOUN);
 		
 		boolean success = false;
-		try {
-			success = NounUtil.analysisMJ(output.clone(), candidates);
-		} catch (CloneNotSupportedException e) {
-			throw new MorphException(e.getMessage(),e);
+		if(NounUtil.endsWithMJ(stem)) {
+			try {
+				success = NounUtil.analysisMJ(output.clone(), candidates);
+			} catch (CloneNotSupportedException e) {
+				throw new MorphException(e.getMessage(),e);
+			}
 		}
 
 		WordEntry entry = DictionaryUtil.getWordExceptVerb(stem);
@@ -330,8 +584,8 @@ public class MorphAnalyzer {
 				output.setScore(AnalysisOutput.SCORE_CORRECT);
 				MorphUtil.buildPtnVM(output, candidates);
 				
-				char[] features = SyllableUtil.getFeature(stem.charAt(stem.length()-1)); // ㄹ불규칙일 경우
-				if(features[SyllableUtil.IDX_YNPLN]=='0'||morphs[1].charAt(0)!='ㄴ') 	return;
+				// ㄹ불규칙일 경우
+				if(!SyllableUtil.hasFeature(stem.charAt(stem.length()-1),SyllableUtil.IDX_YNPLN)||morphs[1].charAt(0)!='ㄴ') 	return;
 			}
 
 			String[] irrs = IrregularUtil.restoreIrregularVerb(o.getStem(), o.getPomi()==null?o.getEomi():o.getPomi());
@@ -399,7 +653,7 @@ public class MorphAnalyzer {
 			  return true;
 		   }
 	   
-		   List<CompoundEntry> results = cnAnalyzer.analyze(o.getStem());
+		   List<CompoundEntry> results = compoundNounAnalyzer().analyze(o.getStem());
 //		   System.out.println(o);
 //		   for(CompoundEntry c :results) System.out.println(c.getWord()+":"+c.isExist());
 		   boolean success = false;
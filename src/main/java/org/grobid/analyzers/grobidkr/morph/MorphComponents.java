@@ -0,0 +1,70 @@
+package org.grobid.analyzers.grobidkr.morph;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 스레드별 분석기: the MorphAnalyzer and the WordSpaceAnalyzer of a thread, shared by all
+ * the KoreanFilters running on it. The WordSpaceAnalyzer works with the same MorphAnalyzer,
+ * and both are created on first use, so that a thread builds them once whatever the number
+ * of analyzers and documents.
+ * <p>
+ *
+ * The analyzers keep no state from one word to the next, but they must only be used by
+ * the thread they were given to.
+ */
+public final class MorphComponents {
+
+	private static final ThreadLocal<MorphComponents> COMPONENTS = ThreadLocal.withInitial(MorphComponents::new);
+
+	private MorphAnalyzer morph;
+
+	private MorphAnalyzer compoundMorph;
+
+	private WordSpaceAnalyzer wordSpace;
+
+	private MorphComponents() {
+	}
+
+	/**
+	 * @return the analyzers of the current thread
+	 */
+	public static MorphComponents get() {
+		return COMPONENTS.get();
+	}
+
+	public MorphAnalyzer getMorphAnalyzer() {
+		if(morph==null) morph = new MorphAnalyzer();
+		return morph;
+	}
+
+	/**
+	 * @return the analyzer which also tries the compound nouns, see {@link MorphAnalyzer#setTryCompound(boolean)}
+	 */
+	public MorphAnalyzer getCompoundMorphAnalyzer() {
+		if(compoundMorph==null) {
+			compoundMorph = new MorphAnalyzer();
+			compoundMorph.setTryCompound(true);
+		}
+		return compoundMorph;
+	}
+
+	public WordSpaceAnalyzer getWordSpaceAnalyzer() {
+		if(wordSpace==null) wordSpace = new WordSpaceAnalyzer(getMorphAnalyzer());
+		return wordSpace;
+	}
+}
@@ -0,0 +1,55 @@
+package org.grobid.analyzers.grobidkr.morph;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 상위 후보: the k best candidates of an analysis, for the callers which only read the
+ * first outputs of the ranking. They are kept in a list sorted by insertion, so that
+ * ranking n candidates costs about n*k comparisons instead of a sort of the whole list.
+ */
+public final class TopCandidates {
+
+	private TopCandidates() {
+	}
+
+	/**
+	 * Fills top with the k first candidates of Collections.sort(candidates, comparator),
+	 * in the same order: equal candidates keep their order, as in the stable sort. The
+	 * comparator must be consistent (a total preorder), which is the case of
+	 * {@link WSOuputComparator}.
+	 * @param top	cleared, then filled with at most k candidates
+	 */
+	public static void select(List<AnalysisOutput> candidates, int k,
+			Comparator<? super AnalysisOutput> comparator, List<AnalysisOutput> top) {
+
+		top.clear();
+		if(k<=0) return;
+
+		for(AnalysisOutput o:candidates) {
+			int i = top.size();
+			// after the worst kept candidate, or equal to it
+			if(i==k&&comparator.compare(o, top.get(k-1))>=0) continue;
+			while(i>0&&comparator.compare(o, top.get(i-1))<0) i--;
+			if(top.size()==k) top.remove(k-1);
+			top.add(i, o);
+		}
+	}
+}
@@ -4,6 +4,11 @@ import java.util.Comparator;
 
 public class WSOuputComparator implements Comparator<AnalysisOutput> {
 
+	/**
+	 * the comparator has no state, one instance is shared by all the rankings
+	 */
+	public static final WSOuputComparator INSTANCE = new WSOuputComparator();
+
 	public int compare(AnalysisOutput o1, AnalysisOutput o2) {
 		
 		// 길이의 역순으로 정렬한다.
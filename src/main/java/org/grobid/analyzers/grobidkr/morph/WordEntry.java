@@ -76,7 +76,7 @@ public class WordEntry {
 	}
 	
 	public char getFeature(int index) {
-		if(features==null||features.length<index) return '0';		
+		if(features==null||features.length<=index) return '0';		
 		return features[index];
 	}
 	
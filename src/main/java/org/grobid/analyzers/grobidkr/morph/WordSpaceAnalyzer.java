@@ -1,9 +1,7 @@
 package org.grobid.analyzers.grobidkr.morph;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -19,19 +17,55 @@ import org.grobid.analyzers.grobidkr.utils.VerbUtil;
  */
 public class WordSpaceAnalyzer {
 
+	/**
+	 * 한 어구의 최대 음절 수: the josas and eomis are only looked for in the first
+	 * MAX_PHRASE chars of the current phrase.
+	 */
+	private static final int MAX_PHRASE = 48;
+	
+	/**
+	 * 음절당 최대 분석 횟수: once the input length times this number of steps are made,
+	 * the rest of the input is returned as one phrase.
+	 */
+	private static final int MAX_STEPS_PER_CHAR = 16;
+	
 	private MorphAnalyzer morphAnal;
 	
+	/**
+	 * the best candidates of the current step, see {@link TopCandidates}
+	 * (a WordSpaceAnalyzer must not be shared between threads)
+	 */
+	private final List<AnalysisOutput> best = new ArrayList<AnalysisOutput>(2);
+	
 	public WordSpaceAnalyzer() {
 		morphAnal = new MorphAnalyzer();
 		morphAnal.setExactCompound(false);
 	}
 	
+	/**
+	 * @param morph	the analyzer of the phrases, used as it is configured (see {@link MorphComponents})
+	 */
+	public WordSpaceAnalyzer(MorphAnalyzer morph) {
+		morphAnal = morph;
+	}
+	
+	/**
+	 * 띄어쓰기를 복원한다.
+	 * <p>
+	 *
+	 * Each step looks for the phrases ending at one char, within MAX_PHRASE chars of the
+	 * current phrase start, so that a step is made in bounded time. A rejected phrase moves
+	 * the scan back, and the steps are at most MAX_STEPS_PER_CHAR per char of the input.
+	 * @return the phrases of the input
+	 */
 	public List analyze(String input)  throws MorphException {
 
-		List stack = new ArrayList();
-		
 		WSOutput output = new WSOutput();
 		
+		char[] chars = input.toCharArray();
+		
+		int steps = MAX_STEPS_PER_CHAR*input.length();
+		
 		int wStart = 0;
 		
 		int sgCount = -9;
@@ -40,51 +74,56 @@ public class WordSpaceAnalyzer {
 				
 		for(int i=0;i<input.length();i++) {						
 			
-			char[] f = SyllableUtil.getFeature(input.charAt(i));
+			if(--steps<0) break; // 분석 중단, 나머지는 하나의 어구로 되돌려 준다.
+			
+			long f = SyllableUtil.getFeatureBits(input.charAt(i));
 			
-			String prefix = i==input.length()-1 ? "X" : input.substring(wStart,i+2);					
-			Iterator iter = DictionaryUtil.findWithPrefix(prefix);
+			boolean hasPrefix = i!=input.length()-1 && DictionaryUtil.hasPrefix(chars,wStart,i+2-wStart);
 			
 			List<AnalysisOutput> candidates = new ArrayList();		
 			
 			WordEntry entry = null;
 					
-			if(input.charAt(i)=='있' || input.charAt(i)=='없' || input.charAt(i)=='앞') {
+			if(i-wStart>=MAX_PHRASE) {
+				// 어구가 너무 길다면 조사나 어미를 찾지 않는다.
+			} else if(input.charAt(i)=='있' || input.charAt(i)=='없' || input.charAt(i)=='앞') {
 				addSingleWord(input.substring(wStart,i), candidates);
 				
 								
 			// 다음 음절이 2음절 이상 단어에 포함되어 있고 마지막 음절이 아니라면   띄워쓰기 위치가 아닐 가능성이 크다.
 			// 부사, 관형사, 감탄사 등 단일어일 가능성인 경우 띄워쓰기가 가능하나, 
 			// 이 경우는 다음 음절을 조사하여 
-			} else if(i!= input.length()-1 && iter.hasNext()) { 
+			} else if(i!= input.length()-1 && hasPrefix) { 
 				// 아무짓도 하지 않음.
 				sgCount = i;
-			} else if(!iter.hasNext() && 
+			} else if(!hasPrefix && 
 					(entry=DictionaryUtil.getBusa(input.substring(wStart,i+1)))!=null) { 				
 				candidates.add(buildSingleOutput(entry));
 				
 			// 현 음절이 조사나 어미가 시작되는 음절일 가능성이 있다면...	
-			} else if(f[SyllableUtil.IDX_EOGAN]=='1'||f[SyllableUtil.IDX_JOSA1]=='1'){				
-				if(f[SyllableUtil.IDX_JOSA1]=='1') 
-					candidates.addAll(anlysisWithJosa(input.substring(wStart), i-wStart));
+			} else if(SyllableUtil.isSet(f,SyllableUtil.IDX_EOGAN)||SyllableUtil.isSet(f,SyllableUtil.IDX_JOSA1)){				
+				String snipt = input.substring(wStart,Math.min(input.length(),wStart+MAX_PHRASE));
+				if(SyllableUtil.isSet(f,SyllableUtil.IDX_JOSA1)) 
+					candidates.addAll(anlysisWithJosa(snipt, i-wStart));
 
-				if(f[SyllableUtil.IDX_EOGAN]=='1') 
-					candidates.addAll(anlysisWithEomi(input.substring(wStart), i-wStart));
+				if(SyllableUtil.isSet(f,SyllableUtil.IDX_EOGAN)) 
+					candidates.addAll(anlysisWithEomi(snipt, i-wStart));
 			}
 	
-			// 호보가 될 가능성이 높은 순으로 정렬한다.
-			Collections.sort(candidates, new WSOuputComparator());
+			// 호보가 될 가능성이 가장 높은 후보
+			TopCandidates.select(candidates, 1, WSOuputComparator.INSTANCE, best);
+			int ranked = candidates.size();
 			
 			// 길이가 가장 긴 단어를 단일어로 추가한다.
-			appendSingleWord(candidates);
+			if(best.size()>0) appendSingleWord(best.get(0), candidates);
 			
 			// 분석에 실패한 단어를 
-			analysisCompouns(candidates);
+			analysisCompouns(candidates.subList(0, ranked));
 			
-			// 호보가 될 가능성이 높은 순으로 정렬한다.
-			Collections.sort(candidates, new WSOuputComparator());			
+			// 호보가 될 가능성이 높은 순으로 두 후보만 고른다 (validationAndAppend reads no more).
+			TopCandidates.select(candidates, 2, WSOuputComparator.INSTANCE, best);
 			
-			int reseult = validationAndAppend(output, candidates, input);
+			int reseult = validationAndAppend(output, best, input);
 			if(reseult==1) {
 				i = output.getLastEnd()-1;
 				wStart = output.getLastEnd();
@@ -142,13 +181,13 @@ public class WordSpaceAnalyzer {
 			
 			String josa = input.substring(i);
 
-			char[] feature =  SyllableUtil.getFeature(josa.charAt(0));	
+			long feature =  SyllableUtil.getFeatureBits(josa.charAt(0));	
 			
-			if(josaFlag&&feature[SyllableUtil.IDX_JOSA1]=='1') {
+			if(josaFlag&&SyllableUtil.isSet(feature,SyllableUtil.IDX_JOSA1)) {
 				morphAnal.analysisWithJosa(stem,josa,candidates);				
 			}
 				
-			if(josaFlag&&feature[SyllableUtil.IDX_JOSA2]=='0') josaFlag = false;
+			if(josaFlag&&!SyllableUtil.isSet(feature,SyllableUtil.IDX_JOSA2)) josaFlag = false;
 			
 			if(!josaFlag) break;
 			
@@ -188,16 +227,14 @@ public class WordSpaceAnalyzer {
 		
 		// 조사의 2음절로 사용될 수 마지막 음절을 찾는다.
 		for(int i=jstart+1;i<snipt.length();i++) {
-			char[] f = SyllableUtil.getFeature(snipt.charAt(i));
-			if(f[SyllableUtil.IDX_JOSA2]=='0') break;
+			if(!SyllableUtil.hasFeature(snipt.charAt(i),SyllableUtil.IDX_JOSA2)) break;
 			jend = i;				
 		}
 				
 		int start = jend;
 		boolean hasJosa = false;
 		for(int i=start;i>=jstart;i--) {
-			String str = snipt.substring(jstart,i+1);
-			if(DictionaryUtil.existJosa(str) && !findNounWithinStr(snipt,i,i+2) &&
+			if(DictionaryUtil.existJosa(snipt,jstart,i+1) && !findNounWithinStr(snipt,i,i+2) &&
 					!isNounPart(snipt,jstart)) {
 				jend = i;
 				hasJosa = true;
@@ -226,13 +263,12 @@ public class WordSpaceAnalyzer {
 	
 	/**
 	 * 목록의 1번지가 가장 큰 길이를 가진다.
-	 * @param candidates
+	 * @param first	the best candidate, the 1번지 of the ranked list
+	 * @param candidates	receives the word of first as a single word, if it is one
 	 */
-	private void appendSingleWord(List<AnalysisOutput> candidates) throws MorphException {
+	private void appendSingleWord(AnalysisOutput first, List<AnalysisOutput> candidates) throws MorphException {
 	
-		if(candidates.size()==0) return;
-		
-		String source = candidates.get(0).getSource();
+		String source = first.getSource();
 		
 		WordEntry entry = DictionaryUtil.getWordExceptVerb(source);
 		
@@ -240,8 +276,8 @@ public class WordSpaceAnalyzer {
 			candidates.add(buildSingleOutput(entry));
 		} else {
 
-			if(candidates.get(0).getPatn()>PatternConstants.PTN_VM&&
-					candidates.get(0).getPatn()<=PatternConstants.PTN_VMXMJ) return;
+			if(first.getPatn()>PatternConstants.PTN_VM&&
+					first.getPatn()<=PatternConstants.PTN_VMXMJ) return;
 			
 			if(source.length()<5) return;
 			
@@ -280,13 +316,12 @@ public class WordSpaceAnalyzer {
 		// 동사앞에 명사분리
 		int vstart = 0;
 		for(int i=estart-1;i>=0;i--) {	
-			Iterator iter = DictionaryUtil.findWithPrefix(snipt.substring(i,estart)); 
-			if(iter.hasNext()) vstart=i;
+			if(DictionaryUtil.hasPrefix(snipt.substring(i,estart))) vstart=i;
 			else break;
 		}
 			
 		if(snipt.length()>eend &&
-				DictionaryUtil.findWithPrefix(snipt.substring(vstart,eend+1)).hasNext()) 
+				DictionaryUtil.hasPrefix(snipt.substring(vstart,eend+1))) 
 			return candidates;	// 다음음절까지 단어의 일부라면.. 분해를 안한다.
 		
 		String pvword = null;
@@ -350,10 +385,10 @@ public class WordSpaceAnalyzer {
 		int strlen = input.length();
 		
 		char ch = input.charAt(strlen-1);
-		char[] feature =  SyllableUtil.getFeature(ch);
+		long feature =  SyllableUtil.getFeatureBits(ch);
 		
-		if(feature[SyllableUtil.IDX_YNPNA]=='1'||feature[SyllableUtil.IDX_YNPLA]=='1'||
-				feature[SyllableUtil.IDX_YNPMA]=='1')
+		if(SyllableUtil.isSet(feature,SyllableUtil.IDX_YNPNA)||SyllableUtil.isSet(feature,SyllableUtil.IDX_YNPLA)||
+				SyllableUtil.isSet(feature,SyllableUtil.IDX_YNPMA))
 			morphAnal.analysisWithEomi(input,"",candidates);
 		
 		for(int i=strlen-1;i>0;i--) {
@@ -361,13 +396,13 @@ public class WordSpaceAnalyzer {
 			String stem = input.substring(0,i);
 			String eomi = input.substring(i);
 
-			feature =  SyllableUtil.getFeature(eomi.charAt(0));		
+			feature =  SyllableUtil.getFeatureBits(eomi.charAt(0));		
 			
 			if(eomiFlag) {			
 				morphAnal.analysisWithEomi(stem,eomi,candidates);
 			}			
 			
-			if(eomiFlag&&feature[SyllableUtil.IDX_EOMI2]=='0') eomiFlag = false;
+			if(eomiFlag&&!SyllableUtil.isSet(feature,SyllableUtil.IDX_EOMI2)) eomiFlag = false;
 			
 			if(!eomiFlag) break;
 		}
@@ -401,15 +436,13 @@ public class WordSpaceAnalyzer {
 		// 조사의 2음절로 사용될 수 마지막 음절을 찾는다.
 		int start = 0;
 		for(int i=1;i<tail.length();i++) {
-			char[] f = SyllableUtil.getFeature(tail.charAt(i));	
-			if(f[SyllableUtil.IDX_EOGAN]=='0') break;
+			if(!SyllableUtil.hasFeature(tail.charAt(i),SyllableUtil.IDX_EOGAN)) break;
 			start = i;				
 		}
 					
 		for(int i=start;i>0;i--) { // 찾을 수 없더라도 1음절은 반드시 반환해야 한다.
-			String str = tail.substring(0,i+1);	
 			char[] chrs = MorphUtil.decompose(tail.charAt(i));	
-			if(DictionaryUtil.existEomi(str) || 
+			if(DictionaryUtil.existEomi(tail,0,i+1) || 
 					(i<2&&chrs.length==3&&(chrs[2]=='ㄹ'||chrs[2]=='ㅁ'||chrs[2]=='ㄴ'))) { // ㅁ,ㄹ,ㄴ이 연속된 용언은 없다, 사전을 보고 확인을 해보자
 				jend = i;
 				break;
@@ -449,7 +482,7 @@ public class WordSpaceAnalyzer {
 		
 		int nEnd = output.getLastEnd()+o.getSource().length();
 		
-		char[] f = nEnd<input.length() ? SyllableUtil.getFeature(input.charAt(nEnd)) : null;			
+		long f = nEnd<input.length() ? SyllableUtil.getFeatureBits(input.charAt(nEnd)) : 0L;			
 		
 		// 밥먹고 같은 경우가 가능하나.. 먹고는 명사가 아니다.
 		if(po!=null&&po.getPatn()==PatternConstants.PTN_N&&candidates.size()>0&&  
@@ -465,11 +498,11 @@ public class WordSpaceAnalyzer {
 		if(o.getPos()==PatternConstants.POS_NOUN && MorphUtil.hasVerbOnly(o.getStem())) {		
 			output.removeLast();		
 			return -1;
-		}else if(nEnd<input.length() && f[SyllableUtil.IDX_JOSA1]=='1' 
+		}else if(nEnd<input.length() && SyllableUtil.isSet(f,SyllableUtil.IDX_JOSA1) 
 			&& DictionaryUtil.getNoun(o.getSource())!=null) {
 			return -1;
 		}else if(nEnd<input.length() && o.getScore()==AnalysisOutput.SCORE_ANALYSIS 
-			&& DictionaryUtil.findWithPrefix(ejend+input.charAt(nEnd)).hasNext()) { // 루씬하ㄴ 글형태소분석기 방지
+			&& DictionaryUtil.hasPrefix(ejend+input.charAt(nEnd))) { // 루씬하ㄴ 글형태소분석기 방지
 			return -1;	
 		}else if(po!=null&&po.getPatn()==PatternConstants.PTN_VM&&"ㅁ".equals(po.getEomi())&&
 				o.getStem().equals("하")) { // 다짐 합니다 로 분리되는 것 방지
@@ -506,23 +539,29 @@ public class WordSpaceAnalyzer {
 		return o;
 	}
 	
+	/**
+	 * Confirms the compound nouns of the candidates, which need not be sorted: the correct
+	 * ones come first in the ranking, so that the candidates to confirm only depend on them.
+	 */
 	private void analysisCompouns(List<AnalysisOutput> candidates) throws MorphException {
 		
 		// 복합명사 분해여부 결정하여 분해
-		boolean changed = false;
 		boolean correct = false;
 		for(AnalysisOutput o:candidates) {
 			
 			if(o.getScore()==AnalysisOutput.SCORE_CORRECT) {
-				if(o.getPatn()!=PatternConstants.PTN_NJ) correct=true;
 				// "활성화해"가 [활성화(N),하(t),어야(e)] 분석성공하였는데 [활성/화해]분해되는 것을 방지
-				if("하".equals(o.getVsfx())) break; 
-				continue;
+				if("하".equals(o.getVsfx())) return; 
+				if(o.getPatn()!=PatternConstants.PTN_NJ) correct=true;
 			}
+		}
+		
+		for(AnalysisOutput o:candidates) {
+			
+			if(o.getScore()==AnalysisOutput.SCORE_CORRECT) continue;
 
 			if(o.getPatn()<=PatternConstants.PTN_VM&&o.getStem().length()>2) {
 				 if(!(correct&&o.getPatn()==PatternConstants.PTN_N)) morphAnal.confirmCNoun(o);
-				 if(o.getScore()==AnalysisOutput.SCORE_CORRECT) changed=true;
 			}
 		}
 		
@@ -541,8 +580,7 @@ public class WordSpaceAnalyzer {
 		if(str.length()<es) return false;
 				
 		for(int i=es;i<str.length();i++) {
-			char[] f = SyllableUtil.getFeature(str.charAt(i));	
-			if(i==str.length() || (f[SyllableUtil.IDX_JOSA1]=='1')) {				
+			if(i==str.length() || SyllableUtil.hasFeature(str.charAt(i),SyllableUtil.IDX_JOSA1)) {				
 				return (DictionaryUtil.getWord(str.substring(ws,i))!=null);
 			}
 		}
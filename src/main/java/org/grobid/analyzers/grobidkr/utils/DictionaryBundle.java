@@ -0,0 +1,142 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+
+/**
+ * 사전 묶음: all the tables used by {@link DictionaryUtil}, the word dictionary, the
+ * josa/eomi/prefix/suffix sets, the uncompounds and the cj map.
+ * <p>
+ *
+ * A bundle is immutable once built: DictionaryUtil publishes it through a volatile field,
+ * so that the lookups read it without any lock, and a new bundle replaces it at once.
+ */
+public final class DictionaryBundle {
+
+	final KoreanDictionary dictionary;
+
+	/**
+	 * the word dictionary without the user words
+	 */
+	final KoreanDictionary baseDictionary;
+
+	/**
+	 * the user words only, merged again with a reloaded base dictionary (null for none)
+	 */
+	final KoreanDictionary userDictionary;
+
+	final DoubleArrayTrie josas;
+
+	final DoubleArrayTrie eomis;
+
+	/**
+	 * the eomis, and the eomis without their first char
+	 */
+	final DoubleArrayTrie eomiTails;
+
+	/**
+	 * the josas and the eomi tails reversed: the endings of a word are all found in one walk
+	 */
+	final DoubleArrayTrie endings;
+
+	/**
+	 * the kinds of each ending, by id: ENDING_JOSA and/or ENDING_EOMI bits
+	 */
+	final byte[] endingKinds;
+
+	final DoubleArrayTrie prefixs;
+
+	final DoubleArrayTrie suffixs;
+
+	/**
+	 * the uncompound entries, by word: only their compounds are used
+	 */
+	final KoreanDictionary uncompounds;
+
+	/** unmodifiable */
+	final Map<String,String> cjwords;
+
+	DictionaryBundle(KoreanDictionary dictionary, KoreanDictionary baseDictionary, KoreanDictionary userDictionary,
+			DoubleArrayTrie josas, DoubleArrayTrie eomis, DoubleArrayTrie eomiTails,
+			DoubleArrayTrie endings, byte[] endingKinds, DoubleArrayTrie prefixs, DoubleArrayTrie suffixs,
+			KoreanDictionary uncompounds, Map<String,String> cjwords) {
+		this.dictionary = dictionary;
+		this.baseDictionary = baseDictionary;
+		this.userDictionary = userDictionary;
+		this.josas = josas;
+		this.eomis = eomis;
+		this.eomiTails = eomiTails;
+		this.endings = endings;
+		this.endingKinds = endingKinds;
+		this.prefixs = prefixs;
+		this.suffixs = suffixs;
+		this.uncompounds = uncompounds;
+		this.cjwords = cjwords;
+	}
+
+	/**
+	 * @param dictionary	the new base dictionary, without user words
+	 * @return a bundle with the same tables and user words, the user words being merged again
+	 * with the new base dictionary
+	 */
+	public DictionaryBundle withDictionary(KoreanDictionary dictionary) {
+		KoreanDictionary merged = userDictionary==null ? dictionary : merge(dictionary, userDictionary);
+		return new DictionaryBundle(merged, dictionary, userDictionary, josas, eomis, eomiTails, endings, endingKinds,
+				prefixs, suffixs, uncompounds, cjwords);
+	}
+
+	/**
+	 * @param user	the user words, null to remove them
+	 * @return a bundle with the same tables and base dictionary, the base dictionary merged with the user words
+	 */
+	DictionaryBundle withUserDictionary(KoreanDictionary user) {
+		KoreanDictionary merged = user==null ? baseDictionary : merge(baseDictionary, user);
+		return new DictionaryBundle(merged, baseDictionary, user, josas, eomis, eomiTails, endings, endingKinds,
+				prefixs, suffixs, uncompounds, cjwords);
+	}
+
+	/**
+	 * @return the base words, a user word replacing the same base word
+	 */
+	private static KoreanDictionary merge(KoreanDictionary base, KoreanDictionary user) {
+		return new KoreanDictionary.Builder().addAll(base).addAll(user).build();
+	}
+
+	/**
+	 * @return the word dictionary used by the lookups, with the user words if any
+	 */
+	public KoreanDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return the word dictionary without the user words
+	 */
+	public KoreanDictionary getBaseDictionary() {
+		return baseDictionary;
+	}
+
+	/**
+	 * @return the user words only, or null if no user dictionary is loaded
+	 */
+	public KoreanDictionary getUserDictionary() {
+		return userDictionary;
+	}
+}
@@ -0,0 +1,56 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+
+/**
+ * Compiles the dic/*.dic text files into a {@link DictionaryImage}.
+ * It runs at build time (process-classes phase), the image is written next to the text
+ * files in the classes directory:
+ * <pre>
+ * java org.grobid.analyzers.grobidkr.utils.DictionaryCompiler &lt;image file&gt;
+ * </pre>
+ */
+public class DictionaryCompiler {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("usage: DictionaryCompiler <image file>");
+			System.exit(1);
+		}
+		long start = System.currentTimeMillis();
+		File file = new File(args[0]);
+		compile(file);
+		System.out.println("Korean dictionary image written to "+file+" ("+file.length()+" bytes, "
+				+(System.currentTimeMillis()-start)+" ms)");
+	}
+
+	/**
+	 * Reads the text files from the classpath and writes their image.
+	 */
+	public static void compile(File file) throws Exception {
+		DictionaryBundle bundle = DictionaryUtil.readBundle(DictionaryUtil.readDictionary());
+
+		long[] syllables = SyllableUtil.toBits(SyllableUtil.readSyllableFeature());
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null) dir.mkdirs();
+		DictionaryImage.write(file, syllables, bundle);
+	}
+}
@@ -0,0 +1,292 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The precompiled binary image of the Korean resources: the word dictionary, the syllable
+ * features and the other tables of {@link DictionaryBundle} (josa/eomi/prefix/suffix tries,
+ * uncompounds, cj words), built from the dic/*.dic text files by {@link DictionaryCompiler}
+ * at build time.
+ * <p>
+ *
+ * The image is located through the KoreanEnv.FILE_IMAGE property (a classpath resource
+ * or a file path). When it is a file, it is opened through a read-only MappedByteBuffer
+ * and the tries work directly over the mapping, so that they cost no parsing and are shared
+ * by all the processes through the page cache. When it is inside a jar, it is
+ * read in memory. When the image is missing, empty or has another version, the loaders
+ * fall back on the text files.
+ * <p>
+ *
+ * Format (big-endian): MAGIC, VERSION, the dictionary ({@link KoreanDictionary#write}),
+ * the syllable features (one long per syllable, bit i for the feature i), the josa, eomi,
+ * eomi tail and ending tries ({@link DoubleArrayTrie#write}), the ending kinds, the prefix
+ * and suffix tries, the uncompounds (a KoreanDictionary) and the cj word pairs.
+ */
+public class DictionaryImage {
+
+	public static final int MAGIC = 0x4B444943; // "KDIC"
+
+	public static final int VERSION = 2;
+
+	private static volatile DictionaryImage instance;
+
+	private static volatile boolean loaded = false;
+
+	private static final Logger LOGGER = Logger.getLogger(DictionaryImage.class.getName());
+
+	private final DictionaryBundle bundle;
+
+	private final LongBuffer syllables;
+
+	private DictionaryImage(DictionaryBundle bundle, LongBuffer syllables) {
+		this.bundle = bundle;
+		this.syllables = syllables;
+	}
+
+	/**
+	 * Returns the image configured in KoreanEnv, loaded on first call.
+	 * @return the image, or null if there is no usable image
+	 */
+	public static DictionaryImage getInstance() {
+		if (!loaded) {
+			synchronized (DictionaryImage.class) {
+				if (!loaded) {
+					instance = load();
+					loaded = true;
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @return the image, or null if none is configured or found, or if it cannot be read
+	 * (a warning is logged then)
+	 */
+	private static DictionaryImage load() {
+		String path = null;
+		try {
+			path = KoreanEnv.getInstance().getValue(KoreanEnv.FILE_IMAGE);
+			if (path == null || path.trim().length() == 0)
+				return null;
+			ByteBuffer buf = open(path.trim());
+			if (buf == null)
+				return null;
+			return read(buf);
+		} catch (Exception e) {
+			// truncated, corrupted or of another version: the text files are used instead
+			LOGGER.log(Level.WARNING, "Cannot read the Korean dictionary image "+path
+					+", the dictionary is loaded from the text files: "+e, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Maps an image file, or reads it when it is not a plain file (inside a jar).
+	 * @return the image bytes, or null if the image cannot be found
+	 */
+	private static ByteBuffer open(String path) throws IOException {
+		File file = new File(path);
+		if (!file.isFile()) {
+			URL url = DictionaryImage.class.getClassLoader().getResource(path);
+			if (url == null)
+				return null;
+			file = FileUtil.toFile(url);
+			if (file == null) {
+				InputStream in = url.openStream();
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] b = new byte[65536];
+					int n;
+					while ((n = in.read(b)) > 0)
+						bytes.write(b, 0, n);
+					return ByteBuffer.wrap(bytes.toByteArray());
+				} finally {
+					in.close();
+				}
+			}
+		}
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			// the mapping stays valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads an image.
+	 * @throws IllegalArgumentException if the buffer is not an image of the current version
+	 */
+	public static DictionaryImage read(ByteBuffer in) {
+		if (in.remaining() < 8 || in.getInt() != MAGIC)
+			throw new IllegalArgumentException("not a Korean dictionary image");
+		int version = in.getInt();
+		if (version != VERSION)
+			throw new IllegalArgumentException("unsupported dictionary image version "+version);
+
+		KoreanDictionary dictionary = KoreanDictionary.read(in);
+		LongBuffer syllables = readLongs(in);
+		DoubleArrayTrie josas = DoubleArrayTrie.read(in);
+		DoubleArrayTrie eomis = DoubleArrayTrie.read(in);
+		DoubleArrayTrie eomiTails = DoubleArrayTrie.read(in);
+		DoubleArrayTrie endings = DoubleArrayTrie.read(in);
+		byte[] endingKinds = new byte[in.getInt()];
+		if (endingKinds.length != endings.size())
+			throw new IllegalArgumentException("corrupted ending kinds");
+		in.get(endingKinds);
+		DoubleArrayTrie prefixs = DoubleArrayTrie.read(in);
+		DoubleArrayTrie suffixs = DoubleArrayTrie.read(in);
+		KoreanDictionary uncompounds = KoreanDictionary.read(in);
+		int n = in.getInt();
+		Map<String, String> cjwords = new HashMap<String, String>();
+		for (int i=0;i<n;i++)
+			cjwords.put(readString(in), readString(in));
+		DictionaryBundle bundle = new DictionaryBundle(dictionary, dictionary, null, josas, eomis, eomiTails,
+				endings, endingKinds, prefixs, suffixs, uncompounds, Collections.unmodifiableMap(cjwords));
+		return new DictionaryImage(bundle, syllables);
+	}
+
+	/**
+	 * Writes an image.
+	 * @param syllables the syllable features, bit i of a syllable for the feature i
+	 * @param bundle the tables, the base dictionary of which is written (not the user words)
+	 */
+	public static void write(File file, long[] syllables, DictionaryBundle bundle) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			bundle.baseDictionary.write(out);
+			out.writeInt(syllables.length);
+			for (long s : syllables)
+				out.writeLong(s);
+			bundle.josas.write(out);
+			bundle.eomis.write(out);
+			bundle.eomiTails.write(out);
+			bundle.endings.write(out);
+			out.writeInt(bundle.endingKinds.length);
+			out.write(bundle.endingKinds);
+			bundle.prefixs.write(out);
+			bundle.suffixs.write(out);
+			bundle.uncompounds.write(out);
+			out.writeInt(bundle.cjwords.size());
+			for (Map.Entry<String, String> e : bundle.cjwords.entrySet()) {
+				writeString(out, e.getKey());
+				writeString(out, e.getValue());
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public KoreanDictionary getDictionary() {
+		return bundle.baseDictionary;
+	}
+
+	/**
+	 * @return all the tables, without user words
+	 */
+	public DictionaryBundle getBundle() {
+		return bundle;
+	}
+
+	/**
+	 * @return the syllable features, bit i of a syllable for the feature i
+	 */
+	public LongBuffer getSyllables() {
+		return syllables.duplicate();
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeInt(s.length());
+		out.writeChars(s);
+	}
+
+	static String readString(ByteBuffer in) {
+		int n = in.getInt();
+		char[] s = new char[n];
+		for (int i=0;i<n;i++)
+			s[i] = in.getChar();
+		return new String(s);
+	}
+
+	static void writeChars(DataOutputStream out, CharBuffer chars) throws IOException {
+		int n = chars.limit();
+		out.writeInt(n);
+		for (int i=0;i<n;i++)
+			out.writeChar(chars.get(i));
+	}
+
+	static void writeInts(DataOutputStream out, IntBuffer ints) throws IOException {
+		int n = ints.limit();
+		out.writeInt(n);
+		for (int i=0;i<n;i++)
+			out.writeInt(ints.get(i));
+	}
+
+	static CharBuffer readChars(ByteBuffer in) {
+		int n = in.getInt();
+		return skip(in, n*2).asCharBuffer();
+	}
+
+	static IntBuffer readInts(ByteBuffer in) {
+		int n = in.getInt();
+		return skip(in, n*4).asIntBuffer();
+	}
+
+	static LongBuffer readLongs(ByteBuffer in) {
+		int n = in.getInt();
+		return skip(in, n*8).asLongBuffer();
+	}
+
+	/**
+	 * Returns the next length bytes of the buffer as a new buffer, and moves the position after them.
+	 */
+	private static ByteBuffer skip(ByteBuffer in, int length) {
+		if (length < 0 || length > in.remaining())
+			throw new IllegalArgumentException("truncated dictionary image");
+		ByteBuffer slice = in.slice();
+		// Buffer casts keep the class usable on a Java 8 runtime
+		((Buffer)slice).limit(length);
+		((Buffer)in).position(in.position()+length);
+		return slice;
+	}
+}
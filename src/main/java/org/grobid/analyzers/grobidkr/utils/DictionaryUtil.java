@@ -17,8 +17,11 @@ package org.grobid.analyzers.grobidkr.utils;
  * limitations under the License.
  */
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -29,26 +32,108 @@ import org.grobid.analyzers.grobidkr.morph.WordEntry;
 
 public class DictionaryUtil {
 	
-	private static Trie<String,WordEntry> dictionary;
+	/**
+	 * all the tables, built at once on first use and replaced at once (see {@link DictionaryBundle})
+	 */
+	private static volatile DictionaryBundle bundle;
 	
-	private static HashMap josas;
+	/** kinds of the endings found by findEndings */
+	private static final byte ENDING_JOSA = 1;
+	private static final byte ENDING_EOMI = 2;
 	
-	private static HashMap eomis;
+	/**
+	 * @return the current tables, loaded on first call
+	 */
+	public static DictionaryBundle getBundle() throws MorphException {
+		DictionaryBundle b = bundle;
+		if(b==null) {
+			synchronized(DictionaryUtil.class) {
+				b = bundle;
+				if(b==null) bundle = b = loadBundle();
+			}
+		}
+		return b;
+	}
 	
-	private static HashMap prefixs;
+	/**
+	 * Replaces all the tables at once: the lookups in progress end with the previous ones.
+	 * Called with the lock of the class, so that no update of the bundle is lost.
+	 */
+	private static void setBundle(DictionaryBundle b) {
+		if(b==null) throw new NullPointerException("bundle");
+		bundle = b;
+	}
 	
-	private static HashMap suffixs;
+	/**
+	 * 사전을 로드한다.
+	 * Reloads the word dictionary, the other tables are loaded if they are not yet.
+	 * The user words loaded by loadUserDictionary are kept.
+	 */
+	public synchronized static void loadDictionary() throws MorphException {
+		DictionaryBundle b = bundle;
+		setBundle(b==null ? loadBundle() : b.withDictionary(loadKoreanDictionary()));
+	}
+	
+	/**
+	 * The precompiled dictionary image is used when available, the text files otherwise.
+	 */
+	private static KoreanDictionary loadKoreanDictionary() throws MorphException {
+		DictionaryImage image = DictionaryImage.getInstance();
+		if(image!=null) return image.getDictionary();
+		return readDictionary();
+	}
 	
-	private static HashMap<String,WordEntry> uncompounds;
+	/**
+	 * All the tables, as built in the dictionary image when available, from the text files otherwise.
+	 */
+	private static DictionaryBundle loadBundle() throws MorphException {
+		DictionaryImage image = DictionaryImage.getInstance();
+		if(image!=null) return image.getBundle();
+		return readBundle(readDictionary());
+	}
 	
-	private static HashMap<String, String> cjwords;
+	/**
+	 * Builds all the tables from the text files, with the given word dictionary.
+	 */
+	static DictionaryBundle readBundle(KoreanDictionary dictionary) throws MorphException {
+		String[] josaWords = readWords(KoreanEnv.FILE_JOSA);
+		String[] eomiWords = readWords(KoreanEnv.FILE_EOMI);
+		String[] tails = Arrays.copyOf(eomiWords, eomiWords.length*2);
+		for(int i=0;i<eomiWords.length;i++) {
+			tails[eomiWords.length+i] = eomiWords[i].length()>0 ? eomiWords[i].substring(1) : eomiWords[i];
+		}
+		
+		// one reverse automaton for all the endings, each one marked josa and/or eomi tail.
+		// findEndings reports them in a long, by length: any number of endings, but each one
+		// shorter than 64 chars, or it would never be found.
+		String[] endingWords = Arrays.copyOf(josaWords, josaWords.length+tails.length);
+		System.arraycopy(tails, 0, endingWords, josaWords.length, tails.length);
+		DoubleArrayTrie endings = DoubleArrayTrie.reversed(endingWords, false);
+		byte[] kinds = new byte[endings.size()];
+		for(int i=0;i<endingWords.length;i++) {
+			if(endingWords[i].length()>=64)
+				throw new MorphException("ending longer than 63 chars: "+endingWords[i]);
+			int id = endings.get(new StringBuilder(endingWords[i]).reverse());
+			if(id>=0) kinds[id] |= i<josaWords.length ? ENDING_JOSA : ENDING_EOMI;
+		}
+		
+		return new DictionaryBundle(dictionary, dictionary, null,
+				new DoubleArrayTrie(josaWords, false),
+				new DoubleArrayTrie(eomiWords, false),
+				new DoubleArrayTrie(tails, false),
+				endings, kinds,
+				readSet(KoreanEnv.FILE_PREFIX),
+				readSet(KoreanEnv.FILE_SUFFIX),
+				readUncompounds(),
+				Collections.unmodifiableMap(readCJWords()));
+	}
 	
 	/**
-	 * 사전을 로드한다.
+	 * Builds the dictionary from the text files.
 	 */
-	public synchronized static void loadDictionary() throws MorphException {
+	static KoreanDictionary readDictionary() throws MorphException {
 		
-		dictionary = new Trie<String, WordEntry>(true);
+		KoreanDictionary.Builder builder = new KoreanDictionary.Builder();
 		List<String> strList = null;
 		List<String> compounds = null;
 		try {
@@ -71,34 +156,118 @@ public class DictionaryUtil {
 		if(strList==null) throw new MorphException("dictionary is null");;
 		
 		for(String str:strList) {
-			String[] infos = StringUtil.split(str,",");
-			if(infos.length!=2) continue;
-			infos[1] = infos[1].trim();
-			if(infos[1].length()==6) infos[1] = infos[1].substring(0,5)+"000"+infos[1].substring(5);
-			
-			WordEntry entry = new WordEntry(infos[0].trim(),infos[1].trim().toCharArray());
-			dictionary.add(entry.getWord(), entry);
+			addWord(builder, str);
 		}
 		
 		for(String compound: compounds) {		
-			String[] infos = StringUtil.split(compound,":");
-			if(infos.length!=2) continue;
-			WordEntry entry = new WordEntry(infos[0].trim(),"20000X".toCharArray());
-			entry.setCompounds(compoundArrayToList(infos[1], StringUtil.split(infos[1],",")));
-			dictionary.add(entry.getWord(), entry);
+			addCompound(builder, compound);
 		}
+		
+		return builder.build();
+	}
+	
+	/**
+	 * Adds a dictionary line "word,features" (the 6 chars features are extended to 9).
+	 * @return false if the line is not a word
+	 */
+	private static boolean addWord(KoreanDictionary.Builder builder, String str) {
+		String[] infos = StringUtil.split(str,",");
+		if(infos.length!=2) return false;
+		infos[1] = infos[1].trim();
+		if(infos[1].length()==6) infos[1] = infos[1].substring(0,5)+"000"+infos[1].substring(5);
+		
+		builder.add(infos[0].trim(),infos[1].toCharArray(),null);
+		return true;
+	}
+	
+	/**
+	 * Adds a compound noun line "word:part1,part2...".
+	 * @return false if the line is not a compound noun
+	 */
+	private static boolean addCompound(KoreanDictionary.Builder builder, String compound) {
+		String[] infos = StringUtil.split(compound,":");
+		if(infos.length!=2) return false;
+		builder.add(infos[0].trim(),"20000X".toCharArray(),
+				compoundArrayToList(infos[1], StringUtil.split(infos[1],",")));
+		return true;
+	}
+	
+	/**
+	 * 사용자 사전을 로드한다.
+	 * Loads a user dictionary file (UTF-8), one entry per line: "word,features" as in total.dic,
+	 * "word:part1,part2..." for a compound noun as in compounds.dic, or a single word for a noun.
+	 * Empty lines and lines starting with # are skipped, a user word replaces the same word of the
+	 * dictionary. The new dictionary is built in the calling thread, the base dictionary merged with
+	 * the user words, then replaces the current one at once (a previous user dictionary is dropped):
+	 * the analyses in progress are not blocked. The user words are kept when loadDictionary reloads
+	 * the base dictionary.
+	 * @param path	the user dictionary file, or null to remove the user words
+	 * @return the number of user words
+	 */
+	public synchronized static int loadUserDictionary(String path) throws MorphException {
+		List<String> lines = null;
+		if(path!=null) {
+			try {
+				lines = FileUtil.readLines(new File(path),"UTF-8");
+			} catch (IOException e) {
+				throw new MorphException(e.getMessage(),e);
+			}
+		}
+		DictionaryBundle b = getBundle();
+		if(lines==null) {
+			setBundle(b.withUserDictionary(null));
+			return 0;
+		}
+		
+		KoreanDictionary.Builder builder = new KoreanDictionary.Builder();
+		int count = 0;
+		for(int i=0;i<lines.size();i++) {
+			String str = lines.get(i).trim();
+			if(i==0&&str.length()>0&&str.charAt(0)=='\uFEFF') str = str.substring(1).trim();
+			if(str.length()==0||str.charAt(0)=='#') continue;
+			
+			boolean added;
+			if(str.indexOf(':')>=0) added = addCompound(builder, str);
+			else if(str.indexOf(',')>=0) added = addWord(builder, str);
+			else added = addWord(builder, str+",100000000X");
+			if(!added) throw new MorphException("invalid user dictionary entry at line "+(i+1)+": "+str);
+			count++;
+		}
+		setBundle(b.withUserDictionary(builder.build()));
+		return count;
 	}
 	
 	public static Iterator findWithPrefix(String prefix) throws MorphException {
-		if(dictionary==null) loadDictionary();
-		return dictionary.getPrefixedBy(prefix);
+		return getBundle().dictionary.findWithPrefix(prefix);
+	}
+	
+	/**
+	 * 주어진 문자열로 시작하는 단어가 사전에 있는지 점검한다.
+	 * Same as findWithPrefix(prefix).hasNext(), without building any entry.
+	 */
+	public static boolean hasPrefix(String prefix) throws MorphException {
+		return getBundle().dictionary.hasPrefix(prefix);
+	}
+	
+	public static boolean hasPrefix(char[] buf, int offset, int length) throws MorphException {
+		return getBundle().dictionary.hasPrefix(buf, offset, length);
 	}
 
 	public static WordEntry getWord(String key) throws MorphException {		
-		if(dictionary==null) loadDictionary();
+		KoreanDictionary dictionary = getBundle().dictionary;
 		if(key.length()==0) return null;
 		
-		return (WordEntry)dictionary.get(key);
+		return dictionary.get(key);
+	}
+	
+	/**
+	 * Looks up the word buf[offset..offset+length-1] without building a String.
+	 */
+	public static WordEntry getWord(char[] buf, int offset, int length) throws MorphException {		
+		KoreanDictionary dictionary = getBundle().dictionary;
+		if(length==0) return null;
+		
+		return dictionary.get(buf, offset, length);
 	}
 	
 	public static WordEntry getWordExceptVerb(String key) throws MorphException {		
@@ -110,6 +279,18 @@ public class DictionaryUtil {
 		return null;
 	}
 	
+	/**
+	 * Same as getWordExceptVerb(String) for the word buf[offset..offset+length-1].
+	 */
+	public static WordEntry getWordExceptVerb(char[] buf, int offset, int length) throws MorphException {		
+		WordEntry entry = getWord(buf, offset, length);		
+		if(entry==null) return null;
+		
+		if(entry.getFeature(WordEntry.IDX_NOUN)=='1'||
+				entry.getFeature(WordEntry.IDX_BUSA)=='1') return entry;
+		return null;
+	}
+	
 	public static WordEntry getNoun(String key) throws MorphException {	
 
 		WordEntry entry = getWord(key);
@@ -119,6 +300,18 @@ public class DictionaryUtil {
 		return null;
 	}
 	
+	/**
+	 * @return the noun buf[offset..offset+length-1], or null
+	 */
+	public static WordEntry getNoun(char[] buf, int offset, int length) throws MorphException {	
+
+		WordEntry entry = getWord(buf, offset, length);
+		if(entry==null) return null;
+		
+		if(entry.getFeature(WordEntry.IDX_NOUN)=='1') return entry;
+		return null;
+	}
+	
 	public static WordEntry getCNoun(String key) throws MorphException {	
 
 		WordEntry entry = getWord(key);
@@ -181,88 +374,155 @@ public class DictionaryUtil {
 	}
 	
 	public static WordEntry getUncompound(String key) throws MorphException {
+		return getBundle().uncompounds.get(key);
+	}
+	
+	public static String getCJWord(String key) throws MorphException {
+		return getBundle().cjwords.get(key);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static KoreanDictionary readUncompounds() throws MorphException {
 		
+		KoreanDictionary.Builder uncompounds = new KoreanDictionary.Builder();
 		try {
-			if(uncompounds==null) {
-				uncompounds = new HashMap();
-				List<String> lines = FileUtil.readLines(DictionaryUtil.class.getClassLoader().
-						getResourceAsStream(KoreanEnv.FILE_UNCOMPOUNDS),"UTF-8");				
-				//FileUtil.readLines(KoreanEnv.getInstance().getValue(KoreanEnv.FILE_UNCOMPOUNDS),"UTF-8");	
-				for(String compound: lines) {		
-					String[] infos = StringUtil.split(compound,":");
-					if(infos.length!=2) continue;
-					WordEntry entry = new WordEntry(infos[0].trim(),"90000X".toCharArray());
-					entry.setCompounds(compoundArrayToList(infos[1], StringUtil.split(infos[1],",")));
-					uncompounds.put(entry.getWord(), entry);
-				}			
-			}	
+			List<String> lines = FileUtil.readLines(DictionaryUtil.class.getClassLoader().
+					getResourceAsStream(KoreanEnv.FILE_UNCOMPOUNDS),"UTF-8");				
+			//FileUtil.readLines(KoreanEnv.getInstance().getValue(KoreanEnv.FILE_UNCOMPOUNDS),"UTF-8");	
+			for(String compound: lines) {		
+				String[] infos = StringUtil.split(compound,":");
+				if(infos.length!=2) continue;
+				uncompounds.add(infos[0].trim(), "90000X".toCharArray(), 
+						compoundArrayToList(infos[1], StringUtil.split(infos[1],",")));
+			}			
 		}catch(Exception e) {
 			throw new MorphException(e);
 		}
-		return uncompounds.get(key);
+		return uncompounds.build();
 	}
 	
-	public static String getCJWord(String key) throws MorphException {
+	private static HashMap<String,String> readCJWords() throws MorphException {
 		
+		HashMap<String,String> cjwords = new HashMap<String,String>();
 		try {
-			if (cjwords==null) {
-				cjwords = new HashMap();
-				List<String> lines = FileUtil.readLines(DictionaryUtil.class.getClassLoader().
-						getResourceAsStream(KoreanEnv.FILE_CJ),"UTF-8");
-				//FileUtil.readLines(KoreanEnv.getInstance().getValue(KoreanEnv.FILE_CJ),"UTF-8");	
-				for(String cj: lines) {		
-					String[] infos = StringUtil.split(cj,":");
-					if(infos.length!=2) continue;
-					cjwords.put(infos[0], infos[1]);
-				}			
-			}	
+			List<String> lines = FileUtil.readLines(DictionaryUtil.class.getClassLoader().
+					getResourceAsStream(KoreanEnv.FILE_CJ),"UTF-8");
+			//FileUtil.readLines(KoreanEnv.getInstance().getValue(KoreanEnv.FILE_CJ),"UTF-8");	
+			for(String cj: lines) {		
+				String[] infos = StringUtil.split(cj,":");
+				if(infos.length!=2) continue;
+				cjwords.put(infos[0], infos[1]);
+			}			
 		}catch(Exception e) {
 			throw new MorphException(e);
 		}
-		return cjwords.get(key);
-		
+		return cjwords;
 	}
 	
 	public static boolean existJosa(String str) throws MorphException {
-		if (josas==null) {
-			josas = new HashMap();
-			readFile(josas,KoreanEnv.FILE_JOSA);
-		}	
-		if (josas.get(str)==null) 
-			return false;
-		else return true;
+		return str!=null && getBundle().josas.get(str)>=0;
+	}
+	
+	/**
+	 * Same as existJosa(String) for the josa buf[offset..offset+length-1].
+	 */
+	public static boolean existJosa(char[] buf, int offset, int length) throws MorphException {
+		return getBundle().josas.get(buf, offset, length)>=0;
+	}
+	
+	/**
+	 * Same as existJosa(String) for the josa str[start..end-1].
+	 */
+	public static boolean existJosa(CharSequence str, int start, int end) throws MorphException {
+		return getBundle().josas.get(str, start, end)>=0;
+	}
+	
+	/**
+	 * 조사 후보를 한 번에 찾는다.
+	 * Finds all the josas ending buf[offset..offset+length-1], in one walk from its end.
+	 * @return a mask where bit k is set when the last k chars are a josa (k&lt;64)
+	 */
+	public static long josaSuffixMask(char[] buf, int offset, int length) throws MorphException {
+		long[] masks = new long[2];
+		findEndings(buf, offset, length, masks);
+		return masks[0];
+	}
+	
+	/**
+	 * 조사와 어미 후보를 한 번에 찾는다.
+	 * Finds all the josas and eomi tails (see existEomiTail) ending buf[offset..offset+length-1],
+	 * in one walk from its end.
+	 * @param masks	receives in masks[0] the josas, in masks[1] the eomi tails: bit k is set
+	 * when the last k chars are one (k&lt;64)
+	 */
+	public static void findEndings(char[] buf, int offset, int length, long[] masks) throws MorphException {
+		DictionaryBundle b = getBundle();
+		b.endings.suffixMasks(buf, offset, length, b.endingKinds, masks);
 	}
 	
 	public static boolean existEomi(String str)  throws MorphException {
-		if(eomis==null) {
-			eomis = new HashMap();
-			readFile(eomis,KoreanEnv.FILE_EOMI);
-		}
-
-		if(eomis.get(str)==null) return false;
-		else return true;
+		return str!=null && getBundle().eomis.get(str)>=0;
+	}
+	
+	/**
+	 * Same as existEomi(first+rest), without building the String.
+	 */
+	public static boolean existEomi(char first, String rest)  throws MorphException {
+		return getBundle().eomis.get(first, rest==null ? "" : rest)>=0;
+	}
+	
+	/**
+	 * Same as existEomi(String) for the eomi str[start..end-1].
+	 */
+	public static boolean existEomi(CharSequence str, int start, int end)  throws MorphException {
+		return getBundle().eomis.get(str, start, end)>=0;
+	}
+	
+	/**
+	 * Same as existEomi(String) for the eomi buf[offset..offset+length-1].
+	 */
+	public static boolean existEomi(char[] buf, int offset, int length)  throws MorphException {
+		return getBundle().eomis.get(buf, offset, length)>=0;
+	}
+	
+	/**
+	 * 어미이거나, 한 글자 뒤에 붙여 어미가 될 수 있는지 점검한다.
+	 * Tells if buf[offset..offset+length-1] is an eomi, or an eomi without its first char.
+	 */
+	public static boolean existEomiTail(char[] buf, int offset, int length)  throws MorphException {
+		return getBundle().eomiTails.get(buf, offset, length)>=0;
+	}
+	
+	/**
+	 * Finds all the eomi tails (see existEomiTail) ending buf[offset..offset+length-1], in one walk from its end.
+	 * @return a mask where bit k is set when the last k chars are an eomi tail (k&lt;64)
+	 */
+	public static long eomiTailSuffixMask(char[] buf, int offset, int length)  throws MorphException {
+		long[] masks = new long[2];
+		findEndings(buf, offset, length, masks);
+		return masks[1];
 	}
 	
 	public static boolean existPrefix(String str)  throws MorphException {
-		if (prefixs==null) {
-			prefixs = new HashMap();
-			readFile(prefixs,KoreanEnv.FILE_PREFIX);
-		}
-
-		if (prefixs.get(str)==null) 
-			return false;
-		else return true;
+		return str!=null && getBundle().prefixs.get(str)>=0;
 	}
 	
 	public static boolean existSuffix(String str)  throws MorphException {
-		if (suffixs==null) {
-			suffixs = new HashMap();
-			readFile(suffixs,KoreanEnv.FILE_SUFFIX);
-		}
-
-		if(suffixs.get(str)!=null) return true;
-		
-		return false;
+		return str!=null && getBundle().suffixs.get(str)>=0;
+	}
+	
+	/**
+	 * Same as existPrefix(String), for buf[offset..offset+length-1].
+	 */
+	public static boolean existPrefix(char[] buf, int offset, int length)  throws MorphException {
+		return getBundle().prefixs.get(buf, offset, length)>=0;
+	}
+	
+	/**
+	 * Same as existSuffix(String), for buf[offset..offset+length-1].
+	 */
+	public static boolean existSuffix(char[] buf, int offset, int length)  throws MorphException {
+		return getBundle().suffixs.get(buf, offset, length)>=0;
 	}
 	
 	/**
@@ -276,40 +536,56 @@ public class DictionaryUtil {
 		if (eomi==null) 
 			eomi="";
 
+		char first;
 		if (s=='ㄴ') 
-			eomi = "은"+eomi;
+			first = '은';
 		else if (s=='ㄹ') 
-			eomi = "을"+eomi;
+			first = '을';
 		else if (s=='ㅁ') 
-			eomi = "음"+eomi;
+			first = '음';
 		else if (s=='ㅂ') 
-			eomi = "습"+eomi;
+			first = '습';
 		else 
-			eomi = s+eomi;
+			first = s;
 
-		if (existEomi(eomi)) 
-			return eomi;
+		// the eomi String is only built when it exists
+		if (existEomi(first, eomi)) 
+			return first+eomi;
 
 		return null;
 	}
 	
 	/**
-	 * 
-	 * @param map
-	 * @param type	1: josa, 2: eomi
+	 * Reads a word list (josa, eomi...) into a set.
+	 * @param dic	the KoreanEnv key of the list (KoreanEnv.FILE_JOSA...)
 	 * @throws MorphException
 	 */
-	private static synchronized void readFile(HashMap map, String dic) throws MorphException {		
+	private static DoubleArrayTrie readSet(String dic) throws MorphException {		
+		return new DoubleArrayTrie(readWords(dic), false);
+	}
+	
+	/**
+	 * Reads the words of a list.
+	 */
+	private static String[] readWords(String dic) throws MorphException {		
 		
-		String path = KoreanEnv.getInstance().getValue(dic);
-
+		List<String> lines = readLines(KoreanEnv.getInstance().getValue(dic));
+		String[] words = new String[lines.size()];
+		for(int i=0;i<words.length;i++) {
+			words[i] = lines.get(i).trim();
+		}
+		return words;
+	}
+	
+	/**
+	 * Reads the lines of a list file, except the header line.
+	 */
+	static List<String> readLines(String path) throws MorphException {
 		try{
 			List<String> line = FileUtil.readLines(DictionaryUtil.class.getClassLoader().
 				getResourceAsStream(path),"UTF-8");
 			//FileUtil.readLines(path,"UTF-8");
-			for(int i=1;i<line.size();i++) {
-				map.put(line.get(i).trim(), line.get(i));
-			}
+			return line.subList(1, Math.max(1, line.size()));
 		} catch(IOException e) {
  		    throw new MorphException(e.getMessage(),e);
 		} catch (Exception e) {
@@ -0,0 +1,539 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * An immutable double-array trie mapping a set of keys to the ids 0..size()-1,
+ * where the id of a key is its rank in the sorted key set.
+ * <p>
+ *
+ * The automaton is made of two int arrays: the transition from the node s with
+ * the code c goes to the slot t = base[s]+c, which belongs to s if check[t]==s+1.
+ * The code 0 is the end of key: the slot base[s] of a node which ends a key
+ * stores the id of this key as -(id+1). Characters are mapped to dense codes
+ * (1..alphabet size) in increasing char order, so that the sibling order is the
+ * key order.
+ * <p>
+ *
+ * The keys themselves are kept packed in a single char array, so that all
+ * lookups can run over a char[] slice without allocating Strings. Since the
+ * ids follow the key order, all the keys starting with a given prefix have
+ * consecutive ids.
+ * <p>
+ *
+ * The trie may be built ignoring case: keys are then canonicalized like
+ * {@link Trie#canonicalCase(String)} does, and every char of a lookup is mapped
+ * to the code of its canonical form.
+ * <p>
+ *
+ * All the arrays are held in buffers, so that a trie read from a dictionary
+ * image can work directly over the mapped file (see {@link DictionaryImage}).
+ */
+public class DoubleArrayTrie {
+
+	private static final int END = 0;
+
+	private final CharBuffer codes;
+
+	private final IntBuffer base;
+
+	private final IntBuffer check;
+
+	private final CharBuffer keyChars;
+
+	private final IntBuffer keyOffsets;
+
+	private final int checkLength;
+
+	private final boolean ignoreCase;
+
+	/**
+	 * Builds the trie of a set of keys. Duplicate keys are merged.
+	 * @param keys the keys, in any order
+	 * @param ignoreCase whether the keys and lookups must be canonicalized to lower case
+	 */
+	public DoubleArrayTrie(String[] keys, boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+
+		String[] sorted = new String[keys.length];
+		for (int i=0;i<keys.length;i++)
+			sorted[i] = canonicalCase(keys[i]);
+		Arrays.sort(sorted);
+
+		int n = 0;
+		int total = 0;
+		for (int i=0;i<sorted.length;i++) {
+			if (n>0 && sorted[n-1].equals(sorted[i])) continue;
+			sorted[n++] = sorted[i];
+			total += sorted[i].length();
+		}
+
+		char[] chars = new char[total];
+		int[] offsets = new int[n+1];
+		int pos = 0;
+		for (int i=0;i<n;i++) {
+			offsets[i] = pos;
+			sorted[i].getChars(0, sorted[i].length(), chars, pos);
+			pos += sorted[i].length();
+		}
+		offsets[n] = pos;
+		char[] alphabet = buildAlphabet(chars, ignoreCase);
+
+		Builder builder = new Builder(alphabet, chars, offsets, Math.max(1024, total*2));
+		if (n > 0)
+			builder.build(0, 0, n, 0);
+
+		this.codes = CharBuffer.wrap(alphabet);
+		this.base = IntBuffer.wrap(Arrays.copyOf(builder.base, builder.size));
+		this.check = IntBuffer.wrap(Arrays.copyOf(builder.check, builder.size));
+		this.keyChars = CharBuffer.wrap(chars);
+		this.keyOffsets = IntBuffer.wrap(offsets);
+		this.checkLength = builder.size;
+	}
+
+	private DoubleArrayTrie(CharBuffer codes, IntBuffer base, IntBuffer check,
+			CharBuffer keyChars, IntBuffer keyOffsets, boolean ignoreCase) {
+		this.codes = codes;
+		this.base = base;
+		this.check = check;
+		this.keyChars = keyChars;
+		this.keyOffsets = keyOffsets;
+		this.checkLength = check.limit();
+		this.ignoreCase = ignoreCase;
+	}
+
+	/**
+	 * Writes the trie in the dictionary image format.
+	 * @see #read(ByteBuffer)
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeBoolean(ignoreCase);
+		DictionaryImage.writeChars(out, codes);
+		DictionaryImage.writeInts(out, base);
+		DictionaryImage.writeInts(out, check);
+		DictionaryImage.writeChars(out, keyChars);
+		DictionaryImage.writeInts(out, keyOffsets);
+	}
+
+	/**
+	 * Reads a trie written by {@link #write(DataOutputStream)}. The trie is a view over
+	 * the buffer, nothing is copied; the buffer position is moved after the trie.
+	 */
+	public static DoubleArrayTrie read(ByteBuffer in) {
+		boolean ignoreCase = in.get() != 0;
+		CharBuffer codes = DictionaryImage.readChars(in);
+		IntBuffer base = DictionaryImage.readInts(in);
+		IntBuffer check = DictionaryImage.readInts(in);
+		CharBuffer keyChars = DictionaryImage.readChars(in);
+		IntBuffer keyOffsets = DictionaryImage.readInts(in);
+		if (codes.limit() != Character.MAX_VALUE+1 || base.limit() != check.limit() || keyOffsets.limit() < 1)
+			throw new IllegalArgumentException("corrupted trie");
+		return new DoubleArrayTrie(codes, base, check, keyChars, keyOffsets, ignoreCase);
+	}
+
+	/**
+	 * Returns the canonical version of a key, as stored in this trie.
+	 */
+	public String canonicalCase(String s) {
+		if (!ignoreCase)
+			return s;
+		return s.toUpperCase(Locale.US).toLowerCase(Locale.US);
+	}
+
+	/**
+	 * @return the number of keys
+	 */
+	public int size() {
+		return keyOffsets.limit()-1;
+	}
+
+	/**
+	 * Returns the id of a key.
+	 * @return the id of the key buf[offset..offset+length-1], or -1 if it is not in the trie
+	 */
+	public int get(char[] buf, int offset, int length) {
+		int s = walk(buf, offset, length);
+		if (s < 0) return -1;
+		return terminal(s);
+	}
+
+	/**
+	 * Returns the id of a key.
+	 * @return the id of the key, or -1 if it is not in the trie
+	 */
+	public int get(CharSequence key) {
+		int s = 0;
+		for (int i=0;i<key.length();i++) {
+			s = next(s, key.charAt(i));
+			if (s < 0) return -1;
+		}
+		return terminal(s);
+	}
+
+	/**
+	 * Returns the id of a key.
+	 * @return the id of the key key[start..end-1], or -1 if it is not in the trie
+	 */
+	public int get(CharSequence key, int start, int end) {
+		int s = 0;
+		for (int i=start;i<end;i++) {
+			s = next(s, key.charAt(i));
+			if (s < 0) return -1;
+		}
+		return terminal(s);
+	}
+
+	/**
+	 * Returns the id of the key first+rest, without building it.
+	 * @return the id of the key, or -1 if it is not in the trie
+	 */
+	public int get(char first, CharSequence rest) {
+		int s = next(0, first);
+		if (s < 0) return -1;
+		for (int i=0;i<rest.length();i++) {
+			s = next(s, rest.charAt(i));
+			if (s < 0) return -1;
+		}
+		return terminal(s);
+	}
+
+	/**
+	 * Builds a trie of the reversed keys, to be searched with {@link #suffixMask(char[], int, int)}
+	 * or {@link #suffixMasks(char[], int, int, byte[], long[])}.
+	 */
+	public static DoubleArrayTrie reversed(String[] keys, boolean ignoreCase) {
+		String[] reversed = new String[keys.length];
+		for (int i=0;i<keys.length;i++)
+			reversed[i] = new StringBuilder(keys[i]).reverse().toString();
+		return new DoubleArrayTrie(reversed, ignoreCase);
+	}
+
+	/**
+	 * Finds all the keys which are a suffix of buf[offset..offset+length-1], in one walk from
+	 * the end of the buffer. Only for a trie built by {@link #reversed(String[], boolean)}.
+	 * @return a mask where bit k is set when the last k chars are a key (k&lt;64, the longer
+	 * suffixes are not reported)
+	 */
+	public long suffixMask(char[] buf, int offset, int length) {
+		long mask = 0;
+		int s = 0;
+		int n = Math.min(length, 63);
+		for (int k=1;k<=n;k++) {
+			s = next(s, buf[offset+length-k]);
+			if (s < 0) break;
+			if (terminal(s) >= 0) mask |= 1L << k;
+		}
+		return mask;
+	}
+
+	/**
+	 * Same as {@link #suffixMask(char[], int, int)} for several sets of keys at once: each key
+	 * belongs to the sets given by the bits of kinds[id], and bit k of masks[b] is set when
+	 * the last k chars are a key of the set b.
+	 * @param masks	receives the masks, one per set
+	 */
+	public void suffixMasks(char[] buf, int offset, int length, byte[] kinds, long[] masks) {
+		Arrays.fill(masks, 0);
+		int s = 0;
+		int n = Math.min(length, 63);
+		for (int k=1;k<=n;k++) {
+			s = next(s, buf[offset+length-k]);
+			if (s < 0) break;
+			int id = terminal(s);
+			if (id < 0) continue;
+			for (int b=0, kind=kinds[id];kind!=0;b++, kind>>>=1) {
+				if ((kind&1) != 0) masks[b] |= 1L << k;
+			}
+		}
+	}
+
+	/**
+	 * Tells if at least one key starts with the given prefix.
+	 */
+	public boolean hasPrefix(char[] buf, int offset, int length) {
+		return size()>0 && walk(buf, offset, length) >= 0;
+	}
+
+	/**
+	 * Tells if at least one key starts with the given prefix.
+	 */
+	public boolean hasPrefix(CharSequence prefix) {
+		if (size()==0) return false;
+		int s = 0;
+		for (int i=0;i<prefix.length();i++) {
+			s = next(s, prefix.charAt(i));
+			if (s < 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds all the keys which are a prefix of buf[offset..offset+length-1],
+	 * shortest first.
+	 * @param ids receives the ids of the keys found, at most ids.length are reported
+	 * @return the number of keys found
+	 */
+	public int commonPrefixSearch(char[] buf, int offset, int length, int[] ids) {
+		int found = 0;
+		int s = 0;
+		for (int i=0;i<length && found<ids.length;i++) {
+			s = next(s, buf[offset+i]);
+			if (s < 0) break;
+			int id = terminal(s);
+			if (id >= 0) ids[found++] = id;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the first id of the keys starting with a prefix. All the keys starting
+	 * with the prefix have the ids prefixStart(..)..prefixEnd(..)-1.
+	 */
+	public int prefixStart(char[] buf, int offset, int length) {
+		int lo = 0, hi = size();
+		while (lo < hi) {
+			int mid = (lo+hi) >>> 1;
+			if (compareToPrefix(mid, buf, offset, length) < 0) lo = mid+1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the id following the last key starting with a prefix.
+	 * @see #prefixStart(char[], int, int)
+	 */
+	public int prefixEnd(char[] buf, int offset, int length) {
+		int lo = 0, hi = size();
+		while (lo < hi) {
+			int mid = (lo+hi) >>> 1;
+			if (compareToPrefix(mid, buf, offset, length) <= 0) lo = mid+1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * @return the length of the key with the given id
+	 */
+	public int keyLength(int id) {
+		return keyOffsets.get(id+1)-keyOffsets.get(id);
+	}
+
+	/**
+	 * Returns the key with the given id. This allocates a String, use
+	 * {@link #copyKey(int, char[], int)} on hot paths.
+	 */
+	public String getKey(int id) {
+		int start = keyOffsets.get(id);
+		int len = keyOffsets.get(id+1)-start;
+		char[] key = new char[len];
+		for (int i=0;i<len;i++)
+			key[i] = keyChars.get(start+i);
+		return new String(key);
+	}
+
+	/**
+	 * Copies the key with the given id into dest, starting at destOffset.
+	 * @return the length of the key
+	 */
+	public int copyKey(int id, char[] dest, int destOffset) {
+		int start = keyOffsets.get(id);
+		int len = keyOffsets.get(id+1)-start;
+		for (int i=0;i<len;i++)
+			dest[destOffset+i] = keyChars.get(start+i);
+		return len;
+	}
+
+	private int walk(char[] buf, int offset, int length) {
+		int s = 0;
+		for (int i=0;i<length;i++) {
+			s = next(s, buf[offset+i]);
+			if (s < 0) return -1;
+		}
+		return s;
+	}
+
+	private int next(int s, char ch) {
+		int c = codes.get(ch);
+		if (c == 0) return -1;
+		int t = base.get(s)+c;
+		if (t >= checkLength || check.get(t) != s+1) return -1;
+		return t;
+	}
+
+	private int terminal(int s) {
+		int t = base.get(s)+END;
+		if (t >= checkLength || check.get(t) != s+1) return -1;
+		return -base.get(t)-1;
+	}
+
+	private int compareToPrefix(int id, char[] buf, int offset, int length) {
+		int start = keyOffsets.get(id);
+		int len = keyOffsets.get(id+1)-start;
+		int n = Math.min(len, length);
+		for (int i=0;i<n;i++) {
+			char k = keyChars.get(start+i);
+			char p = ignoreCase ? canonicalChar(buf[offset+i]) : buf[offset+i];
+			if (k != p) return k < p ? -1 : 1;
+		}
+		return len < length ? -1 : 0;
+	}
+
+	private static char canonicalChar(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static char[] buildAlphabet(char[] chars, boolean ignoreCase) {
+		boolean[] present = new boolean[Character.MAX_VALUE+1];
+		for (char c : chars)
+			present[c] = true;
+
+		char[] codes = new char[Character.MAX_VALUE+1];
+		int code = 0;
+		for (int c=0;c<=Character.MAX_VALUE;c++) {
+			if (present[c]) codes[c] = (char)(++code);
+		}
+		if (ignoreCase) {
+			for (int c=0;c<=Character.MAX_VALUE;c++) {
+				if (codes[c] == 0) codes[c] = codes[canonicalChar((char)c)];
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Builds the double arrays from the sorted keys (internal).
+	 */
+	private static class Builder {
+
+		private final char[] codes;
+
+		private final char[] keyChars;
+
+		private final int[] keyOffsets;
+
+		private int[] base;
+
+		private int[] check;
+
+		private int size = 1;
+
+		private int nextCheckPos = 1;
+
+		private int[] siblingCodes = new int[16];
+
+		Builder(char[] codes, char[] keyChars, int[] keyOffsets, int capacity) {
+			this.codes = codes;
+			this.keyChars = keyChars;
+			this.keyOffsets = keyOffsets;
+			this.base = new int[capacity];
+			this.check = new int[capacity];
+			check[0] = -1; // the root
+		}
+
+		private int code(int id, int depth) {
+			int len = keyOffsets[id+1]-keyOffsets[id];
+			if (depth == len) return END;
+			return codes[keyChars[keyOffsets[id]+depth]];
+		}
+
+		/**
+		 * Places the children of the node s, which are the keys lo..hi-1 at the given depth,
+		 * then recursively their own children.
+		 */
+		void build(int s, int lo, int hi, int depth) {
+			// siblings are the distinct codes at this depth, in increasing order
+			int count = 0;
+			int prev = -1;
+			for (int i=lo;i<hi;i++) {
+				int c = code(i, depth);
+				if (c != prev) {
+					if (count == siblingCodes.length) siblingCodes = Arrays.copyOf(siblingCodes, count*2);
+					siblingCodes[count++] = c;
+					prev = c;
+				}
+			}
+			int[] siblings = Arrays.copyOf(siblingCodes, count);
+			int b = findBase(siblings);
+			base[s] = b;
+			for (int c : siblings)
+				check[b+c] = s+1;
+
+			int start = lo;
+			for (int k=0;k<count;k++) {
+				int c = siblings[k];
+				int end = start;
+				while (end < hi && code(end, depth) == c) end++;
+				if (c == END) {
+					base[b] = -start-1;
+				} else {
+					build(b+c, start, end, depth+1);
+				}
+				start = end;
+			}
+		}
+
+		private int findBase(int[] siblings) {
+			int first = siblings[0];
+			int last = siblings[siblings.length-1];
+			int pos = Math.max(first+1, nextCheckPos)-1;
+			int nonzero = 0;
+			boolean firstFree = true;
+			int b;
+			outer:
+			while (true) {
+				pos++;
+				ensure(pos+1);
+				if (check[pos] != 0) {
+					nonzero++;
+					continue;
+				} else if (firstFree) {
+					nextCheckPos = pos;
+					firstFree = false;
+				}
+				b = pos-first;
+				if (b < 1) continue;
+				ensure(b+last+1);
+				for (int c : siblings) {
+					if (check[b+c] != 0) continue outer;
+				}
+				break;
+			}
+			// skip densely used areas in the next searches
+			if (nonzero*20 >= (pos-nextCheckPos+1)*19) nextCheckPos = pos;
+			size = Math.max(size, b+last+1);
+			return b;
+		}
+
+		private void ensure(int capacity) {
+			if (capacity <= base.length) return;
+			int n = Math.max(capacity, base.length+(base.length>>1));
+			base = Arrays.copyOf(base, n);
+			check = Arrays.copyOf(check, n);
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.grobid.analyzers.grobidkr.morph.CompoundEntry;
+import org.grobid.analyzers.grobidkr.morph.WordEntry;
+
+/**
+ * The immutable Korean word dictionary (total.dic, extension.dic and compounds.dic).
+ * <p>
+ *
+ * Words are stored in a {@link DoubleArrayTrie} and identified by their id in the trie.
+ * The feature strings of all the words are packed in a single char array, FEATURE_SIZE
+ * chars per word, so that a feature can be tested without any object. WordEntry objects
+ * are only built on demand, the first time a word is returned, and then shared.
+ * <p>
+ *
+ * A dictionary is either built from the text files with a {@link Builder}, or read from
+ * a dictionary image, in which case the trie and the features stay in the image buffer.
+ */
+public class KoreanDictionary {
+
+	/**
+	 * Number of chars stored per word in the packed feature array (shorter features are padded with '0').
+	 */
+	public static final int FEATURE_SIZE = 11;
+
+	private final DoubleArrayTrie trie;
+
+	private final CharBuffer features;
+
+	private final Map<Integer, List<CompoundEntry>> compounds;
+
+	private final AtomicReferenceArray<WordEntry> entries;
+
+	private KoreanDictionary(Builder builder) {
+		String[] words = builder.words.keySet().toArray(new String[builder.words.size()]);
+		trie = new DoubleArrayTrie(words, true);
+
+		int n = trie.size();
+		char[] packed = new char[n*FEATURE_SIZE];
+		Arrays.fill(packed, '0');
+		compounds = new HashMap<Integer, List<CompoundEntry>>();
+		for (Map.Entry<String, Word> e : builder.words.entrySet()) {
+			int id = trie.get(e.getKey());
+			char[] f = e.getValue().features;
+			System.arraycopy(f, 0, packed, id*FEATURE_SIZE, Math.min(f.length, FEATURE_SIZE));
+			if (e.getValue().compounds != null) compounds.put(id, e.getValue().compounds);
+		}
+		features = CharBuffer.wrap(packed);
+		entries = new AtomicReferenceArray<WordEntry>(n);
+	}
+
+	private KoreanDictionary(DoubleArrayTrie trie, CharBuffer features, Map<Integer, List<CompoundEntry>> compounds) {
+		this.trie = trie;
+		this.features = features;
+		this.compounds = compounds;
+		this.entries = new AtomicReferenceArray<WordEntry>(trie.size());
+	}
+
+	/**
+	 * Writes the dictionary in the dictionary image format.
+	 * @see #read(ByteBuffer)
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		trie.write(out);
+		DictionaryImage.writeChars(out, features);
+		out.writeInt(compounds.size());
+		for (Map.Entry<Integer, List<CompoundEntry>> e : compounds.entrySet()) {
+			out.writeInt(e.getKey());
+			out.writeInt(e.getValue().size());
+			for (CompoundEntry c : e.getValue()) {
+				DictionaryImage.writeString(out, c.getWord());
+				out.writeInt(c.getOffset());
+			}
+		}
+	}
+
+	/**
+	 * Reads a dictionary written by {@link #write(DataOutputStream)}. The trie and the features
+	 * are views over the buffer; the buffer position is moved after the dictionary.
+	 */
+	public static KoreanDictionary read(ByteBuffer in) {
+		DoubleArrayTrie trie = DoubleArrayTrie.read(in);
+		CharBuffer features = DictionaryImage.readChars(in);
+		if (features.limit() != trie.size()*FEATURE_SIZE)
+			throw new IllegalArgumentException("corrupted dictionary features");
+		int n = in.getInt();
+		Map<Integer, List<CompoundEntry>> compounds = new HashMap<Integer, List<CompoundEntry>>();
+		for (int i=0;i<n;i++) {
+			int id = in.getInt();
+			int count = in.getInt();
+			List<CompoundEntry> list = new ArrayList<CompoundEntry>(count);
+			for (int j=0;j<count;j++) {
+				CompoundEntry c = new CompoundEntry(DictionaryImage.readString(in));
+				c.setOffset(in.getInt());
+				list.add(c);
+			}
+			compounds.put(id, list);
+		}
+		return new KoreanDictionary(trie, features, compounds);
+	}
+
+	/**
+	 * @return the number of words
+	 */
+	public int size() {
+		return trie.size();
+	}
+
+	/**
+	 * Returns the id of a word.
+	 * @return the id of the word buf[offset..offset+length-1], or -1 if it is not in the dictionary
+	 */
+	public int lookup(char[] buf, int offset, int length) {
+		return trie.get(buf, offset, length);
+	}
+
+	/**
+	 * @return the id of the word, or -1 if it is not in the dictionary
+	 */
+	public int lookup(String word) {
+		return trie.get(word);
+	}
+
+	/**
+	 * Returns a feature of a word, without building its WordEntry.
+	 * @param id the id of the word
+	 * @param index the feature index (WordEntry.IDX_NOUN, WordEntry.IDX_VERB...)
+	 */
+	public char getFeature(int id, int index) {
+		if (index >= FEATURE_SIZE) return '0';
+		return features.get(id*FEATURE_SIZE+index);
+	}
+
+	/**
+	 * @return the entry of the word with the given id
+	 */
+	public WordEntry getEntry(int id) {
+		WordEntry entry = entries.get(id);
+		if (entry == null) {
+			char[] f = new char[FEATURE_SIZE];
+			for (int i=0;i<FEATURE_SIZE;i++)
+				f[i] = features.get(id*FEATURE_SIZE+i);
+			entry = new WordEntry(trie.getKey(id), f);
+			List<CompoundEntry> c = compounds.get(id);
+			if (c != null) entry.setCompounds(c);
+			if (!entries.compareAndSet(id, null, entry)) entry = entries.get(id);
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the entry of the word, or null if it is not in the dictionary
+	 */
+	public WordEntry get(String word) {
+		int id = trie.get(word);
+		return id < 0 ? null : getEntry(id);
+	}
+
+	/**
+	 * @return the entry of the word buf[offset..offset+length-1], or null if it is not in the dictionary
+	 */
+	public WordEntry get(char[] buf, int offset, int length) {
+		int id = trie.get(buf, offset, length);
+		return id < 0 ? null : getEntry(id);
+	}
+
+	/**
+	 * Tells if at least one word starts with the given prefix.
+	 */
+	public boolean hasPrefix(String prefix) {
+		return trie.hasPrefix(prefix);
+	}
+
+	/**
+	 * Tells if at least one word starts with buf[offset..offset+length-1].
+	 */
+	public boolean hasPrefix(char[] buf, int offset, int length) {
+		return trie.hasPrefix(buf, offset, length);
+	}
+
+	/**
+	 * Finds the ids of all the words which are a prefix of buf[offset..offset+length-1], shortest first.
+	 * @param ids receives the ids found, at most ids.length are reported
+	 * @return the number of words found
+	 */
+	public int commonPrefixSearch(char[] buf, int offset, int length, int[] ids) {
+		return trie.commonPrefixSearch(buf, offset, length, ids);
+	}
+
+	/**
+	 * @return the length of the word with the given id
+	 */
+	public int wordLength(int id) {
+		return trie.keyLength(id);
+	}
+
+	/**
+	 * Returns an iterator of the entries of all the words starting with a prefix, in word order.
+	 */
+	public Iterator<WordEntry> findWithPrefix(String prefix) {
+		char[] buf = trie.canonicalCase(prefix).toCharArray();
+		return new RangeIterator(trie.prefixStart(buf, 0, buf.length), trie.prefixEnd(buf, 0, buf.length));
+	}
+
+	private class RangeIterator implements Iterator<WordEntry> {
+
+		private int next;
+
+		private final int end;
+
+		RangeIterator(int start, int end) {
+			this.next = start;
+			this.end = end;
+		}
+
+		public boolean hasNext() {
+			return next < end;
+		}
+
+		public WordEntry next() {
+			if (next >= end) throw new NoSuchElementException();
+			return getEntry(next++);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Cannot remove from this iterator");
+		}
+	}
+
+	/**
+	 * Collects the words of a dictionary. When a word is added several times, the last one wins.
+	 */
+	public static class Builder {
+
+		private final LinkedHashMap<String, Word> words = new LinkedHashMap<String, Word>();
+
+		public Builder add(String word, char[] features, List<CompoundEntry> compounds) {
+			words.put(word.toUpperCase(Locale.US).toLowerCase(Locale.US), new Word(features, compounds));
+			return this;
+		}
+
+		/**
+		 * Adds all the words of a dictionary, with their features and compounds.
+		 */
+		public Builder addAll(KoreanDictionary dictionary) {
+			for (int id=0;id<dictionary.size();id++) {
+				char[] f = new char[FEATURE_SIZE];
+				for (int i=0;i<FEATURE_SIZE;i++)
+					f[i] = dictionary.features.get(id*FEATURE_SIZE+i);
+				words.put(dictionary.trie.getKey(id), new Word(f, dictionary.compounds.get(id)));
+			}
+			return this;
+		}
+
+		public KoreanDictionary build() {
+			return new KoreanDictionary(this);
+		}
+	}
+
+	private static class Word {
+
+		final char[] features;
+
+		final List<CompoundEntry> compounds;
+
+		Word(char[] features, List<CompoundEntry> compounds) {
+			this.features = features;
+			this.compounds = compounds;
+		}
+	}
+}
@@ -36,6 +36,10 @@ public class KoreanEnv {
 	public static final String FILE_COMPOUNDS = "org/grobid/analyzers/grobidkr/dic/compounds.dic";	
 	public static final String FILE_UNCOMPOUNDS = "org/grobid/analyzers/grobidkr/dic/compounds.dic";
 	public static final String FILE_CJ = "org/grobid/analyzers/grobidkr/dic/cj.dic";
+	/** precompiled image of the dictionaries, see DictionaryImage (an empty value disables it) */
+	public static final String FILE_IMAGE = "org/grobid/analyzers/grobidkr/dic/dictionary.bin";
+	/** number of words in the analysis cache of GrobidKoreanAnalyzer, see AnalysisCache (0 disables it) */
+	public static final String ANALYSIS_CACHE_SIZE = "analysis.cache.size";
 	
 	public static final String FILE_KOREAN_PROPERTY = "src/main/java/org/grobid/analyzers/grobidkr/korean.properties";
 	
@@ -93,6 +97,8 @@ public class KoreanEnv {
 		defaults.setProperty(FILE_COMPOUNDS,"org/grobid/analyzers/grobidkr/dic/compounds.dic");	
 		defaults.setProperty(FILE_UNCOMPOUNDS,"org/grobid/analyzers/grobidkr/dic/uncompounds.dic");
 		defaults.setProperty(FILE_CJ,"org/grobid/analyzers/grobidkr/dic/cj.dic");
+		defaults.setProperty(FILE_IMAGE,"org/grobid/analyzers/grobidkr/dic/dictionary.bin");
+		defaults.setProperty(ANALYSIS_CACHE_SIZE,"0");
 	 }
 
 	/**
@@ -194,8 +194,7 @@ public class MorphUtil {
 
 	public static boolean hasVerbOnly(String input) throws MorphException {
 		for(int i=input.length()-1;i>=0;i--) {
-			char[] feature = SyllableUtil.getFeature(input.charAt(i));
-			if(feature[SyllableUtil.IDX_WDSURF]=='1'&&input.length()>i) return true;
+			if(SyllableUtil.hasFeature(input.charAt(i),SyllableUtil.IDX_WDSURF)&&input.length()>i) return true;
 		}
 		return false;
 	}
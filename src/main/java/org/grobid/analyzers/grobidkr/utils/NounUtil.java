@@ -37,6 +37,18 @@ public class NounUtil {
         }
     };
     
+	/**
+	 * analysisMJ 의 대상인 어간인지 점검한다: 2음절 이상이고 '기' 또는 받침 'ㅁ' 으로 끝나는 경우.
+	 * @param stem
+	 * @return
+	 */
+	  public static boolean endsWithMJ(String stem) {
+		   int strlen = stem.length();
+		   if(strlen<2) return false;
+		   char[] chrs = MorphUtil.decompose(stem.charAt(strlen-1));
+		   return stem.charAt(strlen-1)=='기'||(chrs.length==3&&chrs[2]=='ㅁ');
+	  }
+
 	/**
 	 * 
 	 * 어간부가 음/기 로 끝나는 경우
@@ -50,12 +62,7 @@ public class NounUtil {
 
 		   int strlen = o.getStem().length();
 		   
-		   if(strlen<2) return false;		   
-
-		   char[] chrs = MorphUtil.decompose(o.getStem().charAt(strlen-1));
-		   boolean success = false;
-
-		   if(o.getStem().charAt(strlen-1)!='기'&&!(chrs.length==3&&chrs[2]=='ㅁ')) return false;
+		   if(!endsWithMJ(o.getStem())) return false;
 
 		   String start = o.getStem();
 		   String end = "";
@@ -333,11 +340,9 @@ public class NounUtil {
 				return nList;
 			}
 			
-			DictionaryUtil dictionaryUtil = new DictionaryUtil();
-
 			for(int i=1;i<str.length();i++) {		
 				String sub = str.substring(0,i+1);		
-				if (!dictionaryUtil.findWithPrefix(sub).hasNext()) break;
+				if (!DictionaryUtil.hasPrefix(sub)) break;
 				WordEntry entry = DictionaryUtil.getCNoun(sub);	
 				if(entry!=null) {					
 					nList.add(entry);
@@ -386,11 +391,11 @@ public class NounUtil {
 				
 				String josa = input.substring(i);
 
-				char[] feature = SyllableUtil.getFeature(josa.charAt(0));		
+				long feature = SyllableUtil.getFeatureBits(josa.charAt(0));		
 				if(josaFlag&&DictionaryUtil.existJosa(josa)) return true;
 	
 				
-				if(josaFlag&&feature[SyllableUtil.IDX_JOSA2]=='0') josaFlag = false;				
+				if(josaFlag&&!SyllableUtil.isSet(feature,SyllableUtil.IDX_JOSA2)) josaFlag = false;				
 				if(!josaFlag) break;
 			}
 			
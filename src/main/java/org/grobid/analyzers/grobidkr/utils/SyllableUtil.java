@@ -19,6 +19,7 @@ package org.grobid.analyzers.grobidkr.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -72,24 +73,26 @@ public class SyllableUtil {
 	
 	public static int IDX_EOGAN = 39; // 어미 또는 어미의 변형으로 존재할 수 있는 음 (즉 IDX_EOMI 이거나 IDX_YNPNA 이후에 1이 있는 음절)
 	
-	private static List Syllables;  // 음절특성 정보
+	/** number of features of a syllable */
+	static final int FEATURE_COUNT = 40;
+	
+	private static volatile long[] Syllables;  // 음절특성 정보, 음절마다 특성 i 를 bit i 로 표시한다
 	
 	/**
 	 * 인덱스 값에 해당하는 음절의 특성을 반환한다.
 	 * 영자 또는 숫자일 경우는 모두 해당이 안되므로 가장 마지막 글자인 '힣' 의 음절특성을 반환한다.
+	 * This is an adapter over {@link #getFeatureBits(int)}, a new array is returned on each call.
 	 * 
 	 * @param idx '가'(0xAC00)이 0부터 유니코드에 의해 한글음절을 순차적으로 나열한 값
 	 * @return
 	 * @throws Exception 
 	 */
 	public static char[] getFeature(int idx)  throws MorphException {
-		if (Syllables == null) 
-			Syllables = getSyllableFeature();
-	
-		if (idx < 0) 
-			return (char[])Syllables.get(Syllables.size()-1);
-		else 
-			return (char[])Syllables.get(idx);
+		long bits = getFeatureBits(idx);
+		char[] features = new char[FEATURE_COUNT];
+		for (int i=0;i<FEATURE_COUNT;i++)
+			features[i] = (bits & (1L<<i)) != 0 ? '1' : '0';
+		return features;
 	}
 	
 	/**
@@ -104,25 +107,93 @@ public class SyllableUtil {
 	}
 	
 	/**
-	 * 음절정보특성을 파일에서 읽는다.
+	 * 인덱스 값에 해당하는 음절의 특성을 bit mask 로 반환한다 (특성 i 는 bit i).
+	 * @param idx see {@link #getFeature(int)}
+	 * @throws IndexOutOfBoundsException if idx is beyond the syllable table
+	 */
+	public static long getFeatureBits(int idx) throws MorphException {
+		long[] syllables = Syllables;
+		if (syllables == null) 
+			Syllables = syllables = getSyllableFeature();
+	
+		if (idx < 0) 
+			return syllables[syllables.length-1];
+		else 
+			return syllables[idx];
+	}
+	
+	/**
+	 * 각 음절의 특성을 bit mask 로 반환한다.
+	 */
+	public static long getFeatureBits(char syl) throws MorphException {
+		return getFeatureBits(syl - 0xAC00);
+	}
+	
+	/**
+	 * 음절이 주어진 특성을 가지는지 점검한다.
+	 * @param syl  음절 하나
+	 * @param idx  특성 (IDX_JOSA1...)
+	 */
+	public static boolean hasFeature(char syl, int idx) throws MorphException {
+		return (getFeatureBits(syl - 0xAC00) & (1L<<idx)) != 0;
+	}
+	
+	/**
+	 * Tests a feature in a mask returned by {@link #getFeatureBits(char)}.
+	 */
+	public static boolean isSet(long features, int idx) {
+		return (features & (1L<<idx)) != 0;
+	}
+	
+	/**
+	 * 음절정보특성을 읽는다.
+	 * The precompiled dictionary image is used when available, syllable.dic otherwise.
 	 * 
 	 * @return
 	 * @throws Exception
 	 */	
-	private static List getSyllableFeature() throws MorphException {
+	private static long[] getSyllableFeature() throws MorphException {
+		DictionaryImage image = DictionaryImage.getInstance();
+		if (image != null) {
+			LongBuffer bits = image.getSyllables();
+			long[] syllables = new long[bits.remaining()];
+			bits.get(syllables);
+			return syllables;
+		}
+		return toBits(readSyllableFeature());
+	}
+	
+	/**
+	 * Packs the '0'/'1' feature lines of syllable.dic into one mask per syllable.
+	 */
+	static long[] toBits(List<char[]> features) {
+		long[] syllables = new long[features.size()];
+		for (int i=0;i<syllables.length;i++) {
+			char[] f = features.get(i);
+			for (int j=0;j<FEATURE_COUNT && j<f.length;j++) {
+				if (f[j] == '1') syllables[i] |= 1L<<j;
+			}
+		}
+		return syllables;
+	}
+	
+	/**
+	 * 음절정보특성을 파일에서 읽는다.
+	 */
+	static List<char[]> readSyllableFeature() throws MorphException {
+		List<char[]> features = new ArrayList<char[]>();
 		try{
-			Syllables = new ArrayList<char[]>();
 			List<String> line = FileUtil.readLines(SyllableUtil.class.getClassLoader().
 				getResourceAsStream(KoreanEnv.FILE_SYLLABLE_FEATURE),"UTF-8");	
 			for(int i=0;i<line.size();i++) {				
 				if(i!=0)
-					Syllables.add(line.get(i).toCharArray());
+					features.add(line.get(i).toCharArray());
 			}
 		} catch(IOException e) {
  		    throw new MorphException(e.getMessage());
 		} 
 
-		return Syllables;
+		return features;
 	}	
 	
 	public static boolean isAlpanumeric(char ch) {
@@ -0,0 +1,196 @@
+package org.grobid.nlp.textboundaries;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Tokenizes a batch of texts in parallel on an executor (an ExecutorService, a ForkJoinPool...).
+ *
+ * Each text is tokenized by {@link ReTokenizer#tokenizeWithSpaces(String)} in a task which borrows
+ * its ReTokenizer from the pool of the language ({@link ReTokenizerFactory#borrow(String)}), so that
+ * every worker thread has its own analyzer components.
+ *
+ * The results are given to a {@link ResultHandler} in the order of the texts, each one as soon as
+ * it and all the previous ones are done. At most maxInFlight texts are submitted and not yet
+ * handled: the texts are only read from the input when there is room, so a long (or endless)
+ * input is processed with bounded memory. A batch stops on the first error, when the calling
+ * thread is interrupted or, at its next result, when its {@link Cancellation} is cancelled; its
+ * pending tasks are then cancelled.
+ *
+ * A BatchTokenizer can run several batches at the same time: each one has its own Cancellation,
+ * so cancelling a batch does not stop the others.
+ *
+ * @author DevBpo
+ *
+ */
+public class BatchTokenizer {
+
+	/**
+	 * Receives the results of a batch.
+	 */
+	public interface ResultHandler {
+		/**
+		 * Called in the calling thread of the batch, in the order of the texts.
+		 * @param index the index of the text in the batch
+		 * @param text the text
+		 * @param tokenized the text tokenized with spaces
+		 * @throws IOException to stop the batch
+		 */
+		void result(int index, String text, String tokenized) throws IOException;
+	}
+
+	/**
+	 * Cancels one batch, from any thread (the handler of the batch included).
+	 */
+	public static class Cancellation {
+
+		private volatile boolean cancelled = false;
+
+		/**
+		 * Stops the batch at its next result.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private final String lang;
+
+	private final ExecutorService executor;
+
+	private final int maxInFlight;
+
+	/**
+	 * @param lang the language code
+	 * @param executor runs the tokenization tasks (it is not shut down by this class)
+	 */
+	public BatchTokenizer(String lang, ExecutorService executor) {
+		this(lang, executor, 2*Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param lang the language code
+	 * @param executor runs the tokenization tasks (it is not shut down by this class)
+	 * @param maxInFlight the maximum number of texts submitted and not yet handled
+	 */
+	public BatchTokenizer(String lang, ExecutorService executor, int maxInFlight) {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be at least 1: "+maxInFlight);
+		this.lang = lang;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Tokenizes the texts and gives the results to the handler, in order, as they complete.
+	 * @param texts the texts, read only when there is room for more tasks
+	 * @param handler receives the results, in the calling thread
+	 * @throws IOException if a text cannot be tokenized or if the handler fails
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public void tokenize(Iterator<String> texts, ResultHandler handler) throws IOException, InterruptedException {
+		tokenize(texts, handler, new Cancellation());
+	}
+
+	/**
+	 * Same as {@link #tokenize(Iterator, ResultHandler)}, the batch can be stopped by cancellation.
+	 * @param cancellation stops this batch only
+	 * @throws CancellationException if the cancellation is cancelled
+	 */
+	public void tokenize(Iterator<String> texts, ResultHandler handler, Cancellation cancellation) throws IOException, InterruptedException {
+		ArrayDeque<Future<String>> inFlight = new ArrayDeque<Future<String>>();
+		ArrayDeque<String> inFlightTexts = new ArrayDeque<String>();
+		int index = 0;
+		boolean done = false;
+		try {
+			while (true) {
+				while (inFlight.size() < maxInFlight && texts.hasNext()) {
+					checkCancelled(cancellation);
+					final String text = texts.next();
+					inFlight.add(executor.submit(new Callable<String>() {
+						public String call() throws Exception {
+							ReTokenizer o = ReTokenizerFactory.borrow(lang);
+							try {
+								return o.tokenizeWithSpaces(text);
+							} finally {
+								ReTokenizerFactory.release(o);
+							}
+						}
+					}));
+					inFlightTexts.add(text);
+				}
+				if (inFlight.isEmpty())
+					break;
+				checkCancelled(cancellation);
+				String tokenized;
+				try {
+					tokenized = inFlight.peek().get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException)
+						throw (IOException) cause;
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IOException(cause);
+				}
+				inFlight.poll();
+				handler.result(index++, inFlightTexts.poll(), tokenized);
+			}
+			done = true;
+		} finally {
+			if (!done) {
+				for (Future<String> f : inFlight)
+					f.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link #tokenize(Iterator, ResultHandler)} for a stream of texts.
+	 */
+	public void tokenize(Stream<String> texts, ResultHandler handler) throws IOException, InterruptedException {
+		tokenize(texts.iterator(), handler);
+	}
+
+	/**
+	 * Tokenizes the texts in parallel.
+	 * @return the texts tokenized with spaces, in the same order
+	 */
+	public List<String> tokenize(List<String> texts) throws IOException, InterruptedException {
+		final List<String> results = new ArrayList<String>(texts.size());
+		tokenize(texts.iterator(), new ResultHandler() {
+			public void result(int index, String text, String tokenized) {
+				results.add(tokenized);
+			}
+		});
+		return results;
+	}
+
+	public String getLanguage() {
+		return lang;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	private static void checkCancelled(Cancellation cancellation) {
+		if (cancellation.isCancelled())
+			throw new CancellationException("batch tokenization cancelled");
+	}
+}
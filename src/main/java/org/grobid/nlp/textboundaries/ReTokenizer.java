@@ -5,11 +5,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -19,6 +22,8 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.util.Version;
 
+import org.apache.commons.io.input.CharSequenceReader;
+
 import org.grobid.analyzers.grobid.GrobidChineseAnalyzer;
 import org.grobid.analyzers.grobid.GrobidJapaneseAnalyzer;
 import org.grobid.analyzers.grobid.GrobidKoreanAnalyzer;
@@ -28,6 +33,10 @@ import org.grobid.nlp.Language;
  * Class used to tokenize a sentence (a short text), usually simply used to return 
  * a sentences with tokens separated by spaces.
  * 
+ * Texts of any size (a full document) are tokenized with the streaming methods 
+ * {@link #tokenize(Reader, TokenHandler)} and {@link #tokenizeWithSpaces(Reader, Appendable)}, 
+ * which give the tokens as they are produced instead of building the result in memory.
+ * 
  * @author DevBpo
  *
  */
@@ -180,61 +189,64 @@ public class ReTokenizer {
 	public String tokenizeWithSpaces (String text, boolean withAttribute) throws IOException {
 		
 		String[] ts = tokensAsArray(text, withAttribute);
-		boolean containsUnderscore = false;
-		String s = "";
+		StringBuilder s = new StringBuilder(text==null ? 16 : text.length()+text.length()/2+16);
 		for (int i=0; i<ts.length;i++) {
-			StringBuffer token = new StringBuffer();
-			int j = 0;
-			boolean specialCaseOfParentheses = (ts[i].endsWith(")") || ts[i].startsWith("<"));
-			boolean containSpaces=false;
-			for (char c:ts[i].toCharArray()) {
-				if (c=='\u00AD') { 
-					// skip
-				} else if (c=='\u0000') { // This char could create problem in C
-					token.append('#');j++;
-				} else if (c==' ') { // we have a space in a token: "(3, 4)" or "and / or" or "12 123 234"
-					if (j >0) {
-						token.append('\u2017'); j++; // ‗ (unicode DOUBLE LOW LINE)
-						containSpaces=true;
-					}
-				} else if (c == ';' && specialCaseOfParentheses && j>0 && j<ts[i].length()-1) {
-					token.append(','); j++;
-				} else {
-					token.append(c);j++;
-					if (c == '_') 
-						containsUnderscore=true;
-				}
-			}
-			if (containSpaces && token.toString().contains("\u2017/\u2017")) {
-				s += (i==0?"":" ")+token.toString().replaceAll("\u2017/\u2017","/");
-			} else {
-				s += (i==0?"":" ")+token;
-			}
+			if (i>0) 
+				s.append(' ');
+			SpacedTokenWriter.clean(ts[i], s);
 		}
-		s = s.replaceAll("[ ]*\\.[ ]$", "");
-		
-		if (containsUnderscore) 
-			s = s.replaceAll("_ TODEL _", "_TODEL_");
-
-		s = s.replaceAll("[ ][ ]+", " ");
-		if (specialMsufBehaviour!=null) {
-			if (specialMsufBehaviour.equals("joinMsuf")) {
-				s=s.replaceAll(" − ", " −");
-			} else if (specialMsufBehaviour.equals("hideMsuf")) {
-				s=s.replaceAll(" − ", " ");
-			} else if (specialMsufBehaviour.equals("prefixMsuf")) {
-				s=s.replaceAll(" − ", "− ");
-			} else if (specialMsufBehaviour.equals("suffixMsuf")) {
-				s=s.replaceAll(" − ", " −");
-			} else if (specialMsufBehaviour.equals("keepMsuf")) {
-//				s=s.replaceAll(" − ", " −");
-			}
-		} else {
-			if (this.languageIdentification.startsWith("ko")) {
-//				s=s.replaceAll(" − ", " −");
+		return SpacedTokenWriter.normalize(s, specialMsufBehaviour);
+	}
+
+	/**
+	 * Tokenizes a text of any size and gives each token to the handler as soon as it is produced.
+	 * All the tokens of the analyzer are given, overlapping ones included.
+	 * @param reader the text, read as the tokenization goes (it is not closed)
+	 * @param handler receives the tokens, with their offsets in the text and their type
+	 * @throws IOException
+	 */
+	public void tokenize(Reader reader, TokenHandler handler) throws IOException {
+		TokenStream stream = this.analyzer.tokenStream("contents", reader);
+		try {
+			CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+			OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+			TypeAttribute typeAttr = stream.addAttribute(TypeAttribute.class);
+
+			stream.reset();
+			while (stream.incrementToken()) {
+				handler.token(termAtt, offsetAtt.startOffset(), offsetAtt.endOffset(), typeAttr.type());
 			}
+			stream.end();
+		}
+		finally {
+			stream.close();
 		}
-		return s;
+	}
+
+	/**
+	 * Same as {@link #tokenize(Reader, TokenHandler)}, the text is read in place (not copied).
+	 */
+	public void tokenize(CharSequence text, TokenHandler handler) throws IOException {
+		tokenize(new CharSequenceReader(text), handler);
+	}
+
+	/**
+	 * Streaming version of {@link #tokenizeWithSpaces(String)} for a text of any size: the tokens
+	 * are written to out, separated by spaces, as they are produced.
+	 * Tokens are written as by tokenizeWithSpaces, the Msuf behaviour applies to a "−" token between
+	 * two tokens.
+	 * @param reader the text, read as the tokenization goes (it is not closed)
+	 * @param out where the tokenized text is written (a Writer, a StringBuilder...)
+	 * @throws IOException
+	 */
+	public void tokenizeWithSpaces(Reader reader, Appendable out) throws IOException {
+		final SpacedTokenWriter writer = new SpacedTokenWriter(out, specialMsufBehaviour);
+		tokenize(reader, new TokenHandler() {
+			public void token(CharSequence term, int startOffset, int endOffset, String type) throws IOException {
+				writer.write(term);
+			}
+		});
+		writer.finish();
 	}
 
 	public String[] tokenize(String[] texts) throws IOException {
@@ -246,6 +258,20 @@ public class ReTokenizer {
 		return res;
 	}
 
+	/**
+	 * Same as {@link #tokenize(String[])}, the texts are tokenized in parallel on the executor
+	 * (see {@link BatchTokenizer}).
+	 * The texts are not tokenized by this ReTokenizer but by the ones of the pool of its language
+	 * ({@link ReTokenizerFactory#borrow(String)}), one per worker thread: they have the settings
+	 * read when they were created (such as NLP.MsufBehaviour), which may differ from the ones of
+	 * this ReTokenizer.
+	 * @throws InterruptedException if the calling thread is interrupted
+	 */
+	public String[] tokenize(String[] texts, ExecutorService executor) throws IOException, InterruptedException {
+		List<String> res = new BatchTokenizer(languageIdentification, executor).tokenize(Arrays.asList(texts));
+		return res.toArray(new String[res.size()]);
+	}
+
 	public String[] tokensAsArray (String text) throws IOException {
 		return tokensAsArray(text, false);
 	}
@@ -327,6 +353,46 @@ public class ReTokenizer {
 		}
 	}
 
+	/**
+	 * Tokenizes a text into columns of offsets and type codes, without any String or boxing
+	 * per token (see {@link TokenRecords}). All the tokens of the analyzer are given, as with 
+	 * {@link #tokensAsArray(String)}, with the part-of-speech for Japanese.
+	 * @param text input text
+	 * @param records receives the tokens, cleared first (so it can be reused from one call to the next)
+	 * @return records
+	 * @throws IOException
+	 */
+	public TokenRecords tokensAsRecords (CharSequence text, TokenRecords records) throws IOException {
+		records.clear();
+		if (text==null || text.length()==0) 
+			return records;
+
+		TokenStream stream = this.analyzer.tokenStream("contents", new CharSequenceReader(text));
+		try {
+			CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+			OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+			TypeAttribute typeAttr = stream.addAttribute(TypeAttribute.class);
+			PartOfSpeechAttribute posAttr = null;
+			if (stream.hasAttribute(PartOfSpeechAttribute.class))
+				posAttr = stream.getAttribute(PartOfSpeechAttribute.class);
+
+			stream.reset();
+			while (stream.incrementToken()) {
+				records.add(termAtt.buffer(), 0, termAtt.length(), offsetAtt.startOffset(), offsetAtt.endOffset(),
+						typeAttr.type(), posAttr!=null ? posAttr.getPartOfSpeech() : null);
+			}
+			stream.end();
+			return records;
+		}
+		finally {
+			stream.close();
+		}
+	}
+
+	public TokenRecords tokensAsRecords (CharSequence text) throws IOException {
+		return tokensAsRecords(text, new TokenRecords());
+	}
+
 	public Integer[] tokensAsOffsets (String text) throws IOException {
 
 		TokenStream stream = this.analyzer.tokenStream("contents", new StringReader(text));
@@ -1,28 +1,146 @@
 package org.grobid.nlp.textboundaries;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
 import org.grobid.nlp.Language;
 
 /**
- * Creates a ReTokenizer object per language and keeps it for future use. 
- * 
+ * Creates a ReTokenizer object per language and keeps it for future use.
+ *
+ * Thread-safety contract:
+ * <ul>
+ * <li>{@link #create(String)} returns one shared instance per language code, built exactly once
+ * even when the first calls are concurrent. The analyzer of a shared instance keeps its token
+ * stream components per thread, so it can be used from several threads, but all of them share
+ * the same Analyzer object.</li>
+ * <li>{@link #borrow(String)} and {@link #release(ReTokenizer)} give an instance exclusively
+ * owned by the calling thread, with its own analyzer, taken from a bounded pool per language code
+ * ({@link ReTokenizerPool}). This is the way to go to scale over many cores without any locking.</li>
+ * </ul>
+ *
  * @author DevBpo
  *
  */
 public class ReTokenizerFactory {
 
-	private static HashMap <String,ReTokenizer> myPool = new HashMap <String,ReTokenizer>();
+	/** Maximum number of idle instances kept per language by the pools */
+	public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+	private static final ConcurrentMap <String,ReTokenizer> myPool = new ConcurrentHashMap <String,ReTokenizer>();
+
+	private static final ConcurrentMap <String,ReTokenizerPool> pools = new ConcurrentHashMap <String,ReTokenizerPool>();
 
 	public static ReTokenizer create(String lang) throws Exception {
-		if (myPool.containsKey(lang)) {
-			return myPool.get(lang);
-		} else {
-			ReTokenizer o = new ReTokenizer(lang);
-			myPool.put(lang, o);
+		ReTokenizer o = myPool.get(lang);
+		if (o != null)
 			return o;
+		try {
+			return myPool.computeIfAbsent(lang, new Function<String,ReTokenizer>() {
+				public ReTokenizer apply(String l) {
+					try {
+						return new ReTokenizer(l);
+					} catch (Exception e) {
+						throw new CreationException(e);
+					}
+				}
+			});
+		} catch (CreationException e) {
+			throw (Exception) e.getCause();
 		}
 	}
 
 	public static ReTokenizer create(Language language) throws Exception {
 		return create(language.getLanguageIdentification());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the pool of ReTokenizer instances for a language code, creating it on first use.
+	 * @param lang the language code
+	 * @return the pool, shared by all threads
+	 */
+	public static ReTokenizerPool getPool(String lang) {
+		ReTokenizerPool pool = pools.get(lang);
+		if (pool != null)
+			return pool;
+		return pools.computeIfAbsent(lang, new Function<String,ReTokenizerPool>() {
+			public ReTokenizerPool apply(String l) {
+				return new ReTokenizerPool(l, DEFAULT_POOL_SIZE);
+			}
+		});
+	}
+
+	/**
+	 * Takes a ReTokenizer exclusively owned by the calling thread until it is given back
+	 * with {@link #release(ReTokenizer)}.
+	 * @param lang the language code
+	 * @return a ReTokenizer which must not be shared with other threads
+	 * @throws Exception if a new ReTokenizer cannot be built
+	 */
+	public static ReTokenizer borrow(String lang) throws Exception {
+		return getPool(lang).borrow();
+	}
+
+	/**
+	 * Gives back to its pool an instance obtained from {@link #borrow(String)}.
+	 * @param o the instance to give back (null is ignored)
+	 */
+	public static void release(ReTokenizer o) {
+		if (o == null)
+			return;
+		getPool(o.languageIdentification).release(o);
+	}
+
+	/**
+	 * Loads in the background, on a pool of daemon threads, all the resources of the languages
+	 * (dictionaries, tables...) which are otherwise loaded on the first analysis, and builds the
+	 * shared ReTokenizer of each language. The resources are loaded concurrently.
+	 * @param langs the language codes
+	 * @return completed with the load time in milliseconds of each resource, by name ("ko_g/dictionary"...),
+	 * or exceptionally if a resource cannot be loaded
+	 */
+	public static CompletableFuture<Map<String,Long>> preload(String... langs) {
+		final AtomicInteger count = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "ReTokenizer-preload-"+count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		CompletableFuture<Map<String,Long>> f = preload(executor, langs);
+		f.whenComplete(new BiConsumer<Map<String,Long>,Throwable>() {
+			public void accept(Map<String,Long> times, Throwable e) {
+				executor.shutdown();
+			}
+		});
+		return f;
+	}
+
+	/**
+	 * Same as {@link #preload(String...)}, on the given executor.
+	 */
+	public static CompletableFuture<Map<String,Long>> preload(Executor executor, String... langs) {
+		return new ResourcePreloader(executor).preload(langs);
+	}
+
+	/**
+	 * Carries a checked exception out of computeIfAbsent.
+	 */
+	private static class CreationException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		CreationException(Exception e) {
+			super(e);
+		}
+	}
+}
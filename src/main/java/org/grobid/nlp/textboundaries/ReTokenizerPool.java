@@ -0,0 +1,89 @@
+package org.grobid.nlp.textboundaries;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of ReTokenizer instances for one language code.
+ *
+ * An instance taken with {@link #borrow()} is owned by the calling thread until it is
+ * given back with {@link #release(ReTokenizer)}, so it can be used without any locking.
+ * borrow() never blocks: when no idle instance is available a new one is built. At most
+ * maxIdle instances are kept once released, extra ones are closed and dropped.
+ *
+ * The pool itself is lock-free and can be shared by any number of threads.
+ *
+ */
+public class ReTokenizerPool {
+
+	private final String lang;
+
+	private final int maxIdle;
+
+	private final ConcurrentLinkedQueue<ReTokenizer> idle = new ConcurrentLinkedQueue<ReTokenizer>();
+
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	private final AtomicInteger created = new AtomicInteger();
+
+	public ReTokenizerPool(String lang, int maxIdle) {
+		if (maxIdle < 1)
+			throw new IllegalArgumentException("maxIdle must be at least 1: "+maxIdle);
+		this.lang = lang;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Takes an idle instance of the pool, or builds a new one if none is available.
+	 * @return a ReTokenizer exclusively owned by the caller until release
+	 * @throws Exception if a new ReTokenizer cannot be built
+	 */
+	public ReTokenizer borrow() throws Exception {
+		ReTokenizer o = idle.poll();
+		if (o != null) {
+			idleCount.decrementAndGet();
+			return o;
+		}
+		o = new ReTokenizer(lang);
+		created.incrementAndGet();
+		return o;
+	}
+
+	/**
+	 * Gives back an instance obtained from {@link #borrow()}. The caller must not use it anymore.
+	 * @param o the instance to give back (null is ignored)
+	 */
+	public void release(ReTokenizer o) {
+		if (o == null)
+			return;
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(o);
+		} else {
+			idleCount.decrementAndGet();
+			if (o.analyzer != null)
+				o.analyzer.close();
+		}
+	}
+
+	public String getLanguage() {
+		return lang;
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	/**
+	 * @return the number of instances currently waiting in the pool
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	/**
+	 * @return the number of instances built by this pool since its creation
+	 */
+	public int getCreatedCount() {
+		return created.get();
+	}
+}
@@ -0,0 +1,160 @@
+package org.grobid.nlp.textboundaries;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import org.apache.lucene.analysis.ja.dict.CharacterDefinition;
+import org.apache.lucene.analysis.ja.dict.ConnectionCosts;
+import org.apache.lucene.analysis.ja.dict.TokenInfoDictionary;
+import org.apache.lucene.analysis.ja.dict.UnknownDictionary;
+
+import org.grobid.analyzers.grobidkr.utils.DictionaryImage;
+import org.grobid.analyzers.grobidkr.utils.DictionaryUtil;
+import org.grobid.analyzers.grobidkr.utils.KoreanEnv;
+import org.grobid.analyzers.grobidkr.utils.SyllableUtil;
+
+/**
+ * Loads the resources of languages on an executor, see {@link ReTokenizerFactory#preload(String...)}.
+ *
+ * The resources of a language are loaded in stages: the resources of a stage are loaded in
+ * parallel, once the previous stage is done. The last stage builds the shared ReTokenizer of the
+ * language and tokenizes a sample text, which loads what the analyzer still loads lazily (the
+ * SmartCN dictionaries...). The languages are loaded in parallel.
+ *
+ * @author DevBpo
+ *
+ */
+class ResourcePreloader {
+
+	private final Executor executor;
+
+	private final Map<String,Long> times = new ConcurrentHashMap<String,Long>();
+
+	ResourcePreloader(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the load time in milliseconds of each resource, by name ("ko_g/dictionary"...)
+	 */
+	CompletableFuture<Map<String,Long>> preload(String... langs) {
+		List<CompletableFuture<Void>> loads = new ArrayList<CompletableFuture<Void>>();
+		for (final String lang : langs) {
+			CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+			for (final Map<String,Callable<?>> stage : stages(lang)) {
+				chain = chain.thenCompose(new Function<Void,CompletableFuture<Void>>() {
+					public CompletableFuture<Void> apply(Void v) {
+						return load(lang, stage);
+					}
+				});
+			}
+			loads.add(chain);
+		}
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]))
+				.thenApply(new Function<Void,Map<String,Long>>() {
+					public Map<String,Long> apply(Void v) {
+						return new TreeMap<String,Long>(times);
+					}
+				});
+	}
+
+	private CompletableFuture<Void> load(String lang, Map<String,Callable<?>> stage) {
+		List<CompletableFuture<Void>> loads = new ArrayList<CompletableFuture<Void>>();
+		for (final Map.Entry<String,Callable<?>> resource : stage.entrySet()) {
+			final String name = lang+"/"+resource.getKey();
+			loads.add(CompletableFuture.runAsync(new Runnable() {
+				public void run() {
+					long start = System.nanoTime();
+					try {
+						resource.getValue().call();
+					} catch (Exception e) {
+						throw new CompletionException("cannot load "+name, e);
+					}
+					times.put(name, (System.nanoTime()-start)/1000000);
+				}
+			}, executor));
+		}
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]));
+	}
+
+	/**
+	 * @return the resources of a language, by stage
+	 */
+	static List<Map<String,Callable<?>>> stages(final String lang) {
+		List<Map<String,Callable<?>>> stages = new ArrayList<Map<String,Callable<?>>>();
+		String sample = null;
+
+		if (lang.startsWith("ja_g")) {
+			Map<String,Callable<?>> dictionaries = new LinkedHashMap<String,Callable<?>>();
+			dictionaries.put("tokeninfo", new Callable<Object>() {
+				public Object call() {
+					return TokenInfoDictionary.getInstance();
+				}
+			});
+			dictionaries.put("unknown", new Callable<Object>() {
+				public Object call() {
+					return UnknownDictionary.getInstance();
+				}
+			});
+			dictionaries.put("connectioncosts", new Callable<Object>() {
+				public Object call() {
+					return ConnectionCosts.getInstance();
+				}
+			});
+			dictionaries.put("characterdefinition", new Callable<Object>() {
+				public Object call() {
+					return CharacterDefinition.getInstance();
+				}
+			});
+			stages.add(dictionaries);
+			sample = "本発明は繊維用の染料に関する。";
+		} else if (lang.startsWith("zh_g")) {
+			sample = "本发明涉及纤维用活性染料的领域。";
+		} else if (lang.startsWith("ko_g") || lang.startsWith("kr_g")) {
+			// the other resources are read from the image when there is one
+			Map<String,Callable<?>> image = new LinkedHashMap<String,Callable<?>>();
+			image.put("image", new Callable<Object>() {
+				public Object call() throws Exception {
+					KoreanEnv.getInstance();
+					return DictionaryImage.getInstance();
+				}
+			});
+			stages.add(image);
+
+			Map<String,Callable<?>> tables = new LinkedHashMap<String,Callable<?>>();
+			// the dictionary, the josa/eomi/prefix/suffix sets, the uncompounds and the cj map
+			tables.put("dictionary", new Callable<Object>() {
+				public Object call() throws Exception {
+					return DictionaryUtil.getBundle();
+				}
+			});
+			tables.put("syllables", new Callable<Object>() {
+				public Object call() throws Exception {
+					return SyllableUtil.getFeatureBits(0);
+				}
+			});
+			stages.add(tables);
+			sample = "본 발명은 섬유용 염료에 관한 것이다.";
+		}
+
+		final String text = sample;
+		Map<String,Callable<?>> analyzer = new LinkedHashMap<String,Callable<?>>();
+		analyzer.put("analyzer", new Callable<Object>() {
+			public Object call() throws Exception {
+				ReTokenizer o = ReTokenizerFactory.create(lang);
+				return text == null ? null : o.tokenizeWithSpaces(text);
+			}
+		});
+		stages.add(analyzer);
+		return stages;
+	}
+}
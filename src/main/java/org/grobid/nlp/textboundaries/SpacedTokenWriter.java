@@ -0,0 +1,254 @@
+package org.grobid.nlp.textboundaries;
+
+import java.io.IOException;
+
+/**
+ * Writes tokens separated by spaces to an Appendable as they come, the streaming
+ * counterpart of {@link ReTokenizer#tokenizeWithSpaces(String)}.
+ * <p>
+ * Each token is cleaned as in tokenizeWithSpaces (soft hyphens removed, \0 as #, inner spaces
+ * as ‗ (unicode DOUBLE LOW LINE), ...) and empty tokens are skipped. The Msuf behaviour applies
+ * to a "−" token between two tokens, except right after a replaced "−" (as the successive matches
+ * of replaceAll(" − ", ...) do not overlap), and "_ TODEL _" is joined as "_TODEL_". Only the current
+ * token and at most one held-back token are kept in memory.
+ *
+ * @author DevBpo
+ *
+ */
+class SpacedTokenWriter {
+
+	static final String MSUF = "−";
+
+	static final String TODEL = "TODEL";
+
+	private static final int HELD_NONE = 0;
+	private static final int HELD_MSUF = 1;
+	private static final int HELD_TODEL = 2;
+
+	private final Appendable out;
+
+	private final String msufBehaviour;
+
+	/** the cleaned current token, reused */
+	private final StringBuilder token = new StringBuilder();
+
+	/** "−" or "TODEL" waiting for the next token to know how it is joined */
+	private int held = HELD_NONE;
+
+	private boolean started = false;
+
+	/** no space before the next token */
+	private boolean glue = false;
+
+	private char last;
+
+	/**
+	 * @param out where the text is written
+	 * @param msufBehaviour the NLP.MsufBehaviour value, or null
+	 */
+	SpacedTokenWriter(Appendable out, String msufBehaviour) {
+		this.out = out;
+		this.msufBehaviour = (msufBehaviour==null || msufBehaviour.equals("keepMsuf")) ? null : msufBehaviour;
+	}
+
+	/**
+	 * Writes a token (or holds it until the next one).
+	 */
+	void write(CharSequence term) throws IOException {
+		token.setLength(0);
+		clean(term, token);
+		if (token.length()==0)
+			return;
+
+		// the space before this token is taken by the " − " of the held "−", as in
+		// replaceAll(" − ", ...): a "−" token right after it is not held (" − − " is replaced once)
+		boolean spaceTaken = held==HELD_MSUF;
+		if (held==HELD_MSUF) {
+			if (msufBehaviour.equals("joinMsuf") || msufBehaviour.equals("suffixMsuf")) {
+				emit(MSUF);
+				glue = true;
+			} else if (msufBehaviour.equals("prefixMsuf")) {
+				glue = true;
+				emit(MSUF);
+			} else if (!msufBehaviour.equals("hideMsuf")) {
+				emit(MSUF);
+			}
+		} else if (held==HELD_TODEL) {
+			if (token.charAt(0)=='_') {
+				glue = true;
+				emit(TODEL);
+				glue = true;
+			} else {
+				emit(TODEL);
+			}
+		}
+		held = HELD_NONE;
+
+		if (started && msufBehaviour!=null && !spaceTaken && equals(token, MSUF)) {
+			held = HELD_MSUF;
+		} else if (started && last=='_' && equals(token, TODEL)) {
+			held = HELD_TODEL;
+		} else {
+			emit(token);
+		}
+	}
+
+	/**
+	 * Writes the token held back, if any.
+	 */
+	void finish() throws IOException {
+		if (held==HELD_MSUF) {
+			emit(MSUF);
+		} else if (held==HELD_TODEL) {
+			emit(TODEL);
+		}
+		held = HELD_NONE;
+	}
+
+	private void emit(CharSequence s) throws IOException {
+		if (started && !glue)
+			out.append(' ');
+		out.append(s);
+		started = true;
+		glue = false;
+		last = s.charAt(s.length()-1);
+	}
+
+	/**
+	 * Appends the token as written by tokenizeWithSpaces: soft hyphens are removed, \0 is
+	 * replaced by #, spaces by ‗ (except leading ones, "‗/‗" becomes "/") and, in a token
+	 * ending with ')' or starting with '<', inner ';' by ','.
+	 */
+	static void clean(CharSequence term, StringBuilder token) {
+		int length = term.length();
+		int start = token.length();
+		boolean specialCaseOfParentheses = length>0 && (term.charAt(length-1)==')' || term.charAt(0)=='<');
+		boolean containSpaces = false;
+		int j = 0;
+		for (int i=0; i<length; i++) {
+			char c = term.charAt(i);
+			if (c=='\u00AD') {
+				// skip
+			} else if (c=='\u0000') { // This char could create problem in C
+				token.append('#'); j++;
+			} else if (c==' ') { // we have a space in a token: "(3, 4)" or "and / or" or "12 123 234"
+				if (j>0) {
+					token.append('\u2017'); j++; // ‗ (unicode DOUBLE LOW LINE)
+					containSpaces = true;
+				}
+			} else if (c==';' && specialCaseOfParentheses && j>0 && j<length-1) {
+				token.append(','); j++;
+			} else {
+				token.append(c); j++;
+			}
+		}
+		if (containSpaces) {
+			// "‗/‗" -> "/"
+			int w = start;
+			int end = token.length();
+			for (int r=start; r<end; r++) {
+				if (r+2<end && token.charAt(r)=='\u2017' && token.charAt(r+1)=='/' && token.charAt(r+2)=='\u2017') {
+					token.setCharAt(w++, '/');
+					r += 2;
+				} else {
+					token.setCharAt(w++, token.charAt(r));
+				}
+			}
+			token.setLength(w);
+		}
+	}
+
+	/**
+	 * Post-processing of the tokens joined by spaces in tokenizeWithSpaces, done in place: same
+	 * result as the successive replaceAll("[ ]*\\.[ ]$", ""), replaceAll("_ TODEL _", "_TODEL_"),
+	 * replaceAll("[ ][ ]+", " ") and the replaceAll(" − ", ...) of the Msuf behaviour.
+	 * @param s the tokens joined by spaces
+	 * @param msufBehaviour the NLP.MsufBehaviour value, or null
+	 * @return the text tokenized with spaces
+	 */
+	static String normalize(StringBuilder s, String msufBehaviour) {
+		// "[ ]*\.[ ]$": $ is the end of the text, or before a line terminator ending it
+		int end = s.length();
+		int dollar = -1;
+		if (end>=2 && s.charAt(end-2)=='\r' && s.charAt(end-1)=='\n') {
+			dollar = end-2;
+		} else if (end>=1) {
+			char c = s.charAt(end-1);
+			if (c=='\n' || c=='\r' || c=='\u0085' || c=='\u2028' || c=='\u2029')
+				dollar = end-1;
+		}
+		int cut = -1;
+		if (end>=2 && s.charAt(end-1)==' ' && s.charAt(end-2)=='.')
+			cut = end;
+		else if (dollar>=2 && s.charAt(dollar-1)==' ' && s.charAt(dollar-2)=='.')
+			cut = dollar;
+		if (cut!=-1) {
+			int start = cut-2;
+			while (start>0 && s.charAt(start-1)==' ')
+				start--;
+			s.delete(start, cut);
+		}
+
+		int msuf = 0;
+		if (msufBehaviour!=null) {
+			if (msufBehaviour.equals("joinMsuf") || msufBehaviour.equals("suffixMsuf"))
+				msuf = 1;
+			else if (msufBehaviour.equals("hideMsuf"))
+				msuf = 2;
+			else if (msufBehaviour.equals("prefixMsuf"))
+				msuf = 3;
+		}
+		char minus = MSUF.charAt(0);
+
+		// "_ TODEL _" and runs of spaces, then " − " on the result: chars are written back at w<=r
+		int n = s.length();
+		int w = 0;
+		int floor = 0; // a " − " is only replaced after the end of the previous one
+		int r = 0;
+		while (r<n) {
+			char c = s.charAt(r);
+			if (c=='_' && r+9<=n && regionMatches(s, r, "_ TODEL _")) {
+				for (int i=0; i<7; i++)
+					s.setCharAt(w++, "_TODEL_".charAt(i));
+				r += 9;
+				continue;
+			}
+			s.setCharAt(w++, c);
+			r++;
+			if (c!=' ')
+				continue;
+			while (r<n && s.charAt(r)==' ')
+				r++;
+			if (msuf!=0 && w-3>=floor && s.charAt(w-2)==minus && s.charAt(w-3)==' ') {
+				if (msuf==1) { // " −"
+					w--;
+				} else if (msuf==2) { // " "
+					w -= 2;
+				} else { // "− "
+					s.setCharAt(w-3, minus);
+					s.setCharAt(w-2, ' ');
+					w--;
+				}
+				floor = w;
+			}
+		}
+		s.setLength(w);
+		return s.toString();
+	}
+
+	private static boolean regionMatches(StringBuilder s, int offset, String b) {
+		for (int i=0; i<b.length(); i++)
+			if (s.charAt(offset+i)!=b.charAt(i))
+				return false;
+		return true;
+	}
+
+	private static boolean equals(CharSequence a, String b) {
+		if (a.length()!=b.length())
+			return false;
+		for (int i=0; i<b.length(); i++)
+			if (a.charAt(i)!=b.charAt(i))
+				return false;
+		return true;
+	}
+}
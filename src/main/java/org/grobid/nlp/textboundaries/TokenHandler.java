@@ -0,0 +1,23 @@
+package org.grobid.nlp.textboundaries;
+
+import java.io.IOException;
+
+/**
+ * Receives the tokens of a text one by one, as they are produced by
+ * {@link ReTokenizer#tokenize(java.io.Reader, TokenHandler)}.
+ *
+ * @author DevBpo
+ *
+ */
+public interface TokenHandler {
+
+	/**
+	 * Called for each token, in the order of the token stream.
+	 * @param term the text of the token, only valid during the call (copy it to keep it)
+	 * @param startOffset offset of the first char of the token in the input
+	 * @param endOffset offset after the last char of the token in the input
+	 * @param type the type of the token (e.g. &lt;ALPHANUM&gt;)
+	 * @throws IOException to stop the tokenization
+	 */
+	void token(CharSequence term, int startOffset, int endOffset, String type) throws IOException;
+}
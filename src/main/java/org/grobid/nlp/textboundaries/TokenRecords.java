@@ -0,0 +1,174 @@
+package org.grobid.nlp.textboundaries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tokens of a text in columns of primitive arrays, filled by
+ * {@link ReTokenizer#tokensAsRecords(CharSequence, TokenRecords)}.
+ *
+ * The text of all the terms is kept in one char buffer, token i being
+ * termBuffer[termOffsets[i]..termOffsets[i+1]-1]. The type of a token (and its
+ * part-of-speech for Japanese) is a short code, its name is given by {@link #getName(short)}.
+ * The codes are given in order of first occurrence and stay the same as long as the object
+ * is used, so an instance can be reused from one text to the next without any allocation
+ * once its arrays are large enough.
+ *
+ * An instance must not be shared between threads.
+ *
+ * @author DevBpo
+ *
+ */
+public class TokenRecords {
+
+	/** code of a missing type or part-of-speech */
+	public static final short NONE = -1;
+
+	private int size = 0;
+
+	private char[] termBuffer = new char[256];
+
+	private int[] termOffsets = new int[65];
+
+	private int[] startOffsets = new int[64];
+
+	private int[] endOffsets = new int[64];
+
+	private short[] types = new short[64];
+
+	private short[] pos = new short[64];
+
+	private final Map<String,Short> codes = new HashMap<String,Short>();
+
+	private final List<String> names = new ArrayList<String>();
+
+	/**
+	 * Removes the tokens, the type codes are kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Adds a token.
+	 * @param buffer the term is buffer[offset..offset+length-1]
+	 * @param type the type of the token, or null
+	 * @param partOfSpeech the part-of-speech of the token, or null
+	 */
+	public void add(char[] buffer, int offset, int length, int startOffset, int endOffset, String type, String partOfSpeech) {
+		if (size == startOffsets.length) {
+			int capacity = size*2;
+			termOffsets = Arrays.copyOf(termOffsets, capacity+1);
+			startOffsets = Arrays.copyOf(startOffsets, capacity);
+			endOffsets = Arrays.copyOf(endOffsets, capacity);
+			types = Arrays.copyOf(types, capacity);
+			pos = Arrays.copyOf(pos, capacity);
+		}
+		int termStart = termOffsets[size];
+		if (termStart+length > termBuffer.length)
+			termBuffer = Arrays.copyOf(termBuffer, Math.max(termBuffer.length*2, termStart+length));
+		System.arraycopy(buffer, offset, termBuffer, termStart, length);
+		termOffsets[size+1] = termStart+length;
+		startOffsets[size] = startOffset;
+		endOffsets[size] = endOffset;
+		types[size] = code(type);
+		pos[size] = code(partOfSpeech);
+		size++;
+	}
+
+	/**
+	 * @return the code of a type or part-of-speech name, given on first call
+	 */
+	public short code(String name) {
+		if (name == null)
+			return NONE;
+		Short code = codes.get(name);
+		if (code == null) {
+			if (names.size() > Short.MAX_VALUE)
+				throw new IllegalStateException("too many token types");
+			code = Short.valueOf((short) names.size());
+			codes.put(name, code);
+			names.add(name);
+		}
+		return code.shortValue();
+	}
+
+	/**
+	 * @return the name of a code, null for NONE
+	 */
+	public String getName(short code) {
+		return code == NONE ? null : names.get(code);
+	}
+
+	/**
+	 * @return the number of tokens
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getStartOffset(int i) {
+		return startOffsets[i];
+	}
+
+	public int getEndOffset(int i) {
+		return endOffsets[i];
+	}
+
+	public short getType(int i) {
+		return types[i];
+	}
+
+	/**
+	 * @return the code of the part-of-speech of the token, NONE if the analyzer does not give it
+	 */
+	public short getPartOfSpeech(int i) {
+		return pos[i];
+	}
+
+	public int getTermStart(int i) {
+		return termOffsets[i];
+	}
+
+	public int getTermLength(int i) {
+		return termOffsets[i+1]-termOffsets[i];
+	}
+
+	/**
+	 * @return the term of the token, as a new String
+	 */
+	public String getTerm(int i) {
+		return new String(termBuffer, termOffsets[i], termOffsets[i+1]-termOffsets[i]);
+	}
+
+	/**
+	 * The arrays below are the internal ones, valid up to size() (size()+1 for the term offsets)
+	 * until the next change.
+	 */
+	public char[] getTermBuffer() {
+		return termBuffer;
+	}
+
+	public int[] getTermOffsets() {
+		return termOffsets;
+	}
+
+	public int[] getStartOffsets() {
+		return startOffsets;
+	}
+
+	public int[] getEndOffsets() {
+		return endOffsets;
+	}
+
+	public short[] getTypes() {
+		return types;
+	}
+
+	public short[] getPartOfSpeeches() {
+		return pos;
+	}
+}
@@ -3,8 +3,45 @@ package org.grobid.analyzers;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.grobid.analyzers.grobid.GrobidKoreanAnalyzer;
+import org.grobid.analyzers.grobidkr.KoreanAnalysisMode;
+import org.grobid.analyzers.grobidkr.KoreanTokenizer;
+import org.grobid.analyzers.grobidkr.morph.AnalysisCache;
+import org.grobid.analyzers.grobidkr.morph.AnalysisOutput;
+import org.grobid.analyzers.grobidkr.morph.CompoundEntry;
+import org.grobid.analyzers.grobidkr.morph.CompoundNounAnalyzer;
+import org.grobid.analyzers.grobidkr.morph.MorphAnalyzer;
+import org.grobid.analyzers.grobidkr.morph.PatternConstants;
+import org.grobid.analyzers.grobidkr.morph.TopCandidates;
+import org.grobid.analyzers.grobidkr.morph.WSOuputComparator;
+import org.grobid.analyzers.grobidkr.morph.WordSpaceAnalyzer;
+import org.grobid.analyzers.grobidkr.utils.DictionaryUtil;
+import org.grobid.nlp.textboundaries.BatchTokenizer;
 import org.grobid.nlp.textboundaries.ReTokenizer;
 import org.grobid.nlp.textboundaries.ReTokenizerFactory;
+import org.grobid.nlp.textboundaries.TokenHandler;
+import org.grobid.nlp.textboundaries.TokenRecords;
 
 
 public class TestGrobidAnalyzers { 
@@ -22,6 +59,7 @@ public class TestGrobidAnalyzers {
 				,"本 发明 涉及 纤维 用 活性染料 的 领域 。 纤维 用 活性染料 的 黑色 染色 混合物 见 诸 于 US 5445654 和 5611821 及 韩国 专利 申请 94 - 2560 。 深 黑色 染料 熟知 于 例如 日本 专利 申请 Sho - 58 - 160362 ， 其 基于 海军蓝 双 偶氮染料 和 橙色 单 偶 氦 染料"},
 
 			{"ko_g","동적 ＤＣＣＨ/ＦＣＨ 스위칭 방법","동적 DCCH / FCH 스위칭 방법"},
+			{"ko_g","청구항 ＩＢＭ＇ｓ 제１２３항 Ｈ２Ｏ （１） ＵＳ　６，２５１，２８２호에","청구항 IBM's 제 123 항 H2O (1) US 6,251,282 호 −에"},
 				
 			{"zh_g","其它a/987类型", "其它 a / 987 类型"},
 			{"zh_g","３７５６７７４","3756774"},
@@ -59,5 +97,476 @@ public class TestGrobidAnalyzers {
 		
 	}
 
-	
+	@Test
+	public void testPreload() throws Exception {
+		Map<String,Long> times = ReTokenizerFactory.preload("ja_g", "zh_g", "ko_g").get();
+		assertTrue(times.containsKey("ja_g/tokeninfo"));
+		assertTrue(times.containsKey("ko_g/dictionary"));
+		for (String lg : new String[]{"ja_g", "zh_g", "ko_g"})
+			assertTrue(times.containsKey(lg+"/analyzer"));
+	}
+
+	@Test
+	public void testConcurrentCreateAndBorrow() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<ReTokenizer>> shared = new ArrayList<Future<ReTokenizer>>();
+			for (int i=0; i<16; i++) {
+				shared.add(pool.submit(new Callable<ReTokenizer>() {
+					public ReTokenizer call() throws Exception {
+						return ReTokenizerFactory.create("zh_g");
+					}
+				}));
+			}
+			ReTokenizer first = shared.get(0).get();
+			for (Future<ReTokenizer> f : shared)
+				assertSame(first, f.get());
+
+			List<Future<String>> tokenized = new ArrayList<Future<String>>();
+			for (final String[] test : t) {
+				tokenized.add(pool.submit(new Callable<String>() {
+					public String call() throws Exception {
+						ReTokenizer o = ReTokenizerFactory.borrow(test[0]);
+						try {
+							return o.tokenizeWithSpaces(test[1]);
+						} finally {
+							ReTokenizerFactory.release(o);
+						}
+					}
+				}));
+			}
+			for (int i=0; i<t.length; i++)
+				assertEquals(t[i][2], tokenized.get(i).get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (String lg : new String[]{"ja_g", "zh_g", "ko_g"}) {
+				List<String> texts = new ArrayList<String>();
+				List<String> expected = new ArrayList<String>();
+				for (int r=0; r<5; r++) {
+					for (String[] test : t) {
+						if (test[0].equals(lg)) {
+							texts.add(test[1]);
+							expected.add(test[2]);
+						}
+					}
+				}
+				assertEquals(expected, new BatchTokenizer(lg, pool, 3).tokenize(texts));
+			}
+
+			// a cancelled batch does not stop the other batch running on the same BatchTokenizer
+			final BatchTokenizer batch = new BatchTokenizer("zh_g", pool, 2);
+			final List<String> texts = new ArrayList<String>();
+			for (int r=0; r<20; r++)
+				texts.add(t[2][1]);
+			final CountDownLatch otherStarted = new CountDownLatch(1);
+			final CountDownLatch cancelled = new CountDownLatch(1);
+			ExecutorService caller = Executors.newSingleThreadExecutor();
+			try {
+				Future<List<String>> other = caller.submit(new Callable<List<String>>() {
+					public List<String> call() throws Exception {
+						final List<String> results = new ArrayList<String>();
+						batch.tokenize(texts.iterator(), new BatchTokenizer.ResultHandler() {
+							public void result(int index, String text, String tokenized) {
+								results.add(tokenized);
+								otherStarted.countDown();
+								try {
+									cancelled.await();
+								} catch (InterruptedException e) {
+									throw new RuntimeException(e);
+								}
+							}
+						});
+						return results;
+					}
+				});
+				otherStarted.await();
+
+				final BatchTokenizer.Cancellation cancellation = new BatchTokenizer.Cancellation();
+				final List<String> results = new ArrayList<String>();
+				try {
+					batch.tokenize(texts.iterator(), new BatchTokenizer.ResultHandler() {
+						public void result(int index, String text, String tokenized) {
+							results.add(tokenized);
+							cancellation.cancel();
+						}
+					}, cancellation);
+					fail("batch not cancelled");
+				} catch (CancellationException e) {
+					assertEquals(1, results.size());
+				} finally {
+					cancelled.countDown();
+				}
+				assertEquals(20, other.get().size());
+				// nor the next batches
+				assertEquals(20, batch.tokenize(texts).size());
+			} finally {
+				caller.shutdown();
+			}
+
+			// ReTokenizer.tokenize on an executor: the pooled instances of the language, in order
+			List<String> koTexts = new ArrayList<String>();
+			List<String> koExpected = new ArrayList<String>();
+			for (int r=0; r<5; r++) {
+				for (String[] test : t) {
+					if (test[0].equals("ko_g")) {
+						koTexts.add(test[1]);
+						koExpected.add(test[2]);
+					}
+				}
+			}
+			String[] array = koTexts.toArray(new String[koTexts.size()]);
+			ReTokenizer o = ReTokenizerFactory.create("ko_g");
+			assertArrayEquals(koExpected.toArray(), o.tokenize(array, pool));
+			assertArrayEquals(o.tokenize(array), o.tokenize(array, pool));
+			assertEquals(0, o.tokenize(new String[0], pool).length);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		for (final String[] test : t) {
+			ReTokenizer o = ReTokenizerFactory.create(test[0]);
+
+			StringBuilder out = new StringBuilder();
+			o.tokenizeWithSpaces(new StringReader(test[1]), out);
+			assertEquals(test[2], out.toString());
+
+			final List<String> terms = new ArrayList<String>();
+			o.tokenize(test[1], new TokenHandler() {
+				public void token(CharSequence term, int startOffset, int endOffset, String type) {
+					assertTrue(startOffset >= 0 && startOffset <= endOffset && endOffset <= test[1].length());
+					assertNotNull(type);
+					terms.add(term.toString());
+				}
+			});
+			assertEquals(o.tokensAsList(test[1]), terms);
+		}
+
+		// the same text as tokenizeWithSpaces in every Msuf behaviour, "−" tokens next to each other included
+		String[] modes = {"keepMsuf", "joinMsuf", "hideMsuf", "prefixMsuf", "suffixMsuf"};
+		String[] expected = {"a − b − − c", "a −b −− c", "a b − c", "a− b− − c", "a −b −− c"};
+		String previous = System.getProperty("NLP.MsufBehaviour");
+		try {
+			for (int m=0; m<modes.length; m++) {
+				System.setProperty("NLP.MsufBehaviour", modes[m]);
+				ReTokenizer o = new ReTokenizer("ko_g");
+				List<String> texts = new ArrayList<String>();
+				for (String[] test : t)
+					texts.add(test[1]);
+				texts.add("a − b − − c");
+				texts.add("호에 − − 개시된 − − − 바와 − 같은 −");
+				for (String text : texts) {
+					StringBuilder out = new StringBuilder();
+					o.tokenizeWithSpaces(new StringReader(text), out);
+					assertEquals(modes[m]+": "+text, o.tokenizeWithSpaces(text), out.toString());
+				}
+				assertEquals(modes[m], expected[m], o.tokenizeWithSpaces("a − b − − c"));
+			}
+		} finally {
+			if (previous == null)
+				System.clearProperty("NLP.MsufBehaviour");
+			else
+				System.setProperty("NLP.MsufBehaviour", previous);
+		}
+	}
+
+	@Test
+	public void testRecords() throws Exception {
+		TokenRecords records = new TokenRecords();
+		for (String[] test : t) {
+			ReTokenizer o = ReTokenizerFactory.create(test[0]);
+			o.tokensAsRecords(test[1], records);
+
+			List<String> terms = new ArrayList<String>();
+			for (int i=0; i<records.size(); i++) {
+				terms.add(records.getTerm(i));
+				assertTrue(records.getStartOffset(i) <= records.getEndOffset(i));
+				assertNotNull(records.getName(records.getType(i)));
+				if (test[0].equals("ja_g"))
+					assertNotNull(records.getName(records.getPartOfSpeech(i)));
+				else
+					assertEquals(TokenRecords.NONE, records.getPartOfSpeech(i));
+			}
+			assertEquals(o.tokensAsList(test[1]), terms);
+		}
+	}
+
+	@Test
+	public void testKoreanAnalysisCache() throws Exception {
+		GrobidKoreanAnalyzer plain = new GrobidKoreanAnalyzer();
+		plain.setAnalysisCacheSize(0);
+		GrobidKoreanAnalyzer cached = new GrobidKoreanAnalyzer();
+		cached.setAnalysisCacheSize(8);
+		AnalysisCache cache = cached.getAnalysisCache();
+		assertNotNull(cache);
+
+		for (String[] test : t) {
+			if (!test[0].equals("ko_g"))
+				continue;
+			// the second time, the words of the short sentences come from the cache
+			for (int r=0; r<2; r++)
+				assertEquals(tokens(plain, test[1]), tokens(cached, test[1]));
+		}
+		assertTrue(cache.getHitCount() > 0);
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.size() <= 8);
+
+		// the cache is set once the components of the thread exist
+		String text = t[1][1];
+		assertEquals(tokens(plain, text), tokens(plain, text));
+		plain.setAnalysisCacheSize(1000);
+		assertEquals(tokens(cached, text), tokens(plain, text));
+		assertEquals(tokens(cached, text), tokens(plain, text));
+		AnalysisCache later = plain.getAnalysisCache();
+		assertTrue(later.size() > 0);
+		assertTrue(later.getHitCount() > 0);
+		assertTrue(later.getMissCount() > 0);
+	}
+
+	@Test
+	public void testKoreanUserDictionary() throws Exception {
+		File file = File.createTempFile("user", ".dic");
+		try {
+			Files.write(file.toPath(), "# test\n그로비드\n그로비드분석기:그로비드,분석기\n".getBytes(StandardCharsets.UTF_8));
+			assertNull(DictionaryUtil.getWord("그로비드"));
+			assertEquals(Integer.valueOf(2), GrobidKoreanAnalyzer.loadUserDictionary(file.getPath()).get());
+			assertNotNull(DictionaryUtil.getNoun("그로비드"));
+			assertEquals(2, DictionaryUtil.getCNoun("그로비드분석기").getCompounds().size());
+			assertNotNull(DictionaryUtil.getNoun("자체"));
+
+			// the user words are kept when the base dictionary is reloaded
+			DictionaryUtil.loadDictionary();
+			assertNotNull(DictionaryUtil.getNoun("그로비드"));
+			assertEquals(2, DictionaryUtil.getCNoun("그로비드분석기").getCompounds().size());
+			assertNotNull(DictionaryUtil.getNoun("자체"));
+
+			ReTokenizer o = ReTokenizerFactory.create("ko_g");
+			assertEquals(t[1][2], o.tokenizeWithSpaces(t[1][1]));
+		} finally {
+			GrobidKoreanAnalyzer.loadUserDictionary(null).get();
+			file.delete();
+		}
+		assertNull(DictionaryUtil.getWord("그로비드"));
+	}
+
+	@Test
+	public void testKoreanSuffixSets() throws Exception {
+		for (String word : new String[]{"학교에서는", "먹었습니다", "사용하여", "헬릭스를"}) {
+			char[] buf = word.toCharArray();
+			long josas = DictionaryUtil.josaSuffixMask(buf, 0, buf.length);
+			long eomis = DictionaryUtil.eomiTailSuffixMask(buf, 0, buf.length);
+			for (int k=1; k<=buf.length; k++) {
+				int i = buf.length-k;
+				assertEquals(word+"/"+k, DictionaryUtil.existJosa(word.substring(i)), (josas>>>k&1)!=0);
+				assertEquals(word+"/"+k, DictionaryUtil.existEomiTail(buf, i, k), (eomis>>>k&1)!=0);
+			}
+		}
+		assertTrue(DictionaryUtil.existEomi('어', "서"));
+		assertEquals(DictionaryUtil.existEomi("어서"), DictionaryUtil.existEomi('어', "서"));
+		assertEquals("을수록", DictionaryUtil.combineAndEomiCheck('ㄹ', "수록"));
+	}
+
+	private static String tokens(Analyzer analyzer, String text) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		TokenStream ts = analyzer.tokenStream("text", new StringReader(text));
+		CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+		ts.reset();
+		while (ts.incrementToken())
+			sb.append(term.toString()).append(' ');
+		ts.end();
+		ts.close();
+		return sb.toString();
+	}
+
+	@Test
+	public void testKoreanCompoundNouns() throws Exception {
+		CompoundNounAnalyzer analyzer = new CompoundNounAnalyzer();
+		for (int n=0; n<2; n++) {
+			List<CompoundEntry> entries = analyzer.analyze("자연언어처리기술개발", true);
+			List<String> words = new ArrayList<String>();
+			for (CompoundEntry e : entries) words.add(e.getWord());
+			assertEquals("[자연, 언어, 처리, 기술, 개발]", words.toString());
+			// the results are not shared with the analyzer
+			entries.clear();
+		}
+		assertEquals(3, analyzer.analyze("반도체제조장치", true).size());
+
+		// a compound of more than 20 chars is split as well
+		List<String> words = new ArrayList<String>();
+		for (CompoundEntry e : analyzer.analyze("자연언어처리기술개발반도체제조장치연구사업", true)) words.add(e.getWord());
+		assertEquals("[자연, 언어, 처리, 기술, 개발, 반도체, 제조, 장치, 연구, 사업]", words.toString());
+		words.clear();
+		for (CompoundEntry e : analyzer.analyze("정보검색시스템형태소분석기", true)) words.add(e.getWord());
+		assertEquals("[정보검색, 시스템, 형태소, 분석, 기]", words.toString());
+	}
+
+	@Test
+	public void testKoreanWordSpacing() throws Exception {
+		WordSpaceAnalyzer analyzer = new WordSpaceAnalyzer();
+		List<String> phrases = new ArrayList<String>();
+		for (Object o : analyzer.analyze("학교에서공부를합니다")) phrases.add(((AnalysisOutput) o).getSource());
+		assertEquals("[학교에서, 공부를, 합니다]", phrases.toString());
+
+		// a long unspaced text is analyzed in bounded time, all its chars are kept
+		StringBuilder input = new StringBuilder();
+		while (input.length() < 2000) input.append("본발명은반도체장치의제조방법에관한것으로");
+		StringBuilder joined = new StringBuilder();
+		for (Object o : analyzer.analyze(input.toString())) joined.append(((AnalysisOutput) o).getSource());
+		assertEquals(input.toString(), joined.toString());
+	}
+
+	@Test
+	public void testKoreanMorphComponents() throws Exception {
+		Analyzer analyzer = new GrobidKoreanAnalyzer();
+		String text = "본 발명은 섬유용 염료에 관한 것이다.";
+		tokens(analyzer, text);
+		long count = MorphAnalyzer.getInstanceCount();
+
+		// no MorphAnalyzer per document, nor per analyzer of the same thread
+		for (int i = 0; i < 10; i++)
+			tokens(analyzer, text);
+		assertEquals("본 발명 −은 섬유용 염료 −에 관한 것 −이다 . ", tokens(new GrobidKoreanAnalyzer(), text));
+		assertEquals(count, MorphAnalyzer.getInstanceCount());
+	}
+
+	@Test
+	public void testKoreanAnalysisModes() throws Exception {
+		GrobidKoreanAnalyzer fast = new GrobidKoreanAnalyzer();
+		fast.setAnalysisMode(KoreanAnalysisMode.FAST);
+		GrobidKoreanAnalyzer full = new GrobidKoreanAnalyzer();
+		GrobidKoreanAnalyzer decompound = new GrobidKoreanAnalyzer();
+		decompound.setAnalysisMode(KoreanAnalysisMode.DECOMPOUND);
+
+		String text = "반도체제조장치에 관한 것이다";
+		assertEquals("반도체제조장치 −에 관한 것 −이다 ", tokens(fast, text));
+		assertEquals(tokens(full, text), tokens(fast, text));
+		// FAST only splits a word whose best analysis is a split
+		assertEquals("두께 ", tokens(fast, "두께"));
+		assertEquals("두 −께 ", tokens(full, "두께"));
+
+		// a word which is not split is returned with its compound nouns
+		assertEquals("자연언어처리기술개발 ", tokens(full, "자연언어처리기술개발"));
+		List<String> terms = new ArrayList<String>();
+		for (String term : tokens(decompound, "자연언어처리기술개발").split(" ")) terms.add(term);
+		Collections.sort(terms);
+		assertEquals("[개발, 기술, 언어, 자연, 자연언어처리기술개발, 처리]", terms.toString());
+
+		// the mode is changed once the components of the thread exist
+		GrobidKoreanAnalyzer changed = new GrobidKoreanAnalyzer();
+		assertEquals(tokens(full, "자연언어처리기술개발"), tokens(changed, "자연언어처리기술개발"));
+		changed.setAnalysisMode(KoreanAnalysisMode.DECOMPOUND);
+		assertEquals(tokens(decompound, "자연언어처리기술개발"), tokens(changed, "자연언어처리기술개발"));
+		changed.setAnalysisMode(KoreanAnalysisMode.FAST);
+		assertEquals("두께 ", tokens(changed, "두께"));
+	}
+
+	@Test
+	public void testMorphAnalyzeFirst() throws Exception {
+		MorphAnalyzer morph = new MorphAnalyzer();
+		// the first split of the complete analysis, or none
+		String[] words = {"반도체제조장치에", "관한", "것이다", "두께", "산화실리콘막이", "구비된다", "사이에는", "고양이", "자연언어처리기술개발", "것이다."};
+		for (String word : words) {
+			char[] buffer = word.toCharArray();
+			AnalysisOutput expected = null;
+			for (Object o : morph.analyze(buffer, 0, buffer.length)) {
+				AnalysisOutput output = (AnalysisOutput) o;
+				if (output.getStem().length() < word.length() && (word.equals(output.getStem()+output.getJosa()) ||
+						word.equals(output.getStem()+output.getVsfx()+output.getEomi()))) {
+					expected = output;
+					break;
+				}
+			}
+			AnalysisOutput first = morph.analyzeFirst(buffer, 0, buffer.length);
+			assertEquals(word, String.valueOf(expected), String.valueOf(first));
+		}
+		assertEquals("두", morph.analyzeFirst("두께".toCharArray(), 0, 2).getStem());
+		assertNull(morph.analyzeFirst("고양이".toCharArray(), 0, 3));
+	}
+
+	@Test
+	public void testTopCandidates() throws Exception {
+		List<AnalysisOutput> candidates = new ArrayList<AnalysisOutput>();
+		String[] stems = {"가", "가나", "다", "가나다", "라", "가나"};
+		int[] scores = {AnalysisOutput.SCORE_ANALYSIS, AnalysisOutput.SCORE_CORRECT, AnalysisOutput.SCORE_CORRECT,
+				AnalysisOutput.SCORE_FAIL, AnalysisOutput.SCORE_CORRECT, AnalysisOutput.SCORE_CORRECT};
+		for (int i = 0; i < stems.length; i++) {
+			AnalysisOutput o = new AnalysisOutput(stems[i], null, null, PatternConstants.PTN_N, scores[i]);
+			o.setSource(stems[i]);
+			candidates.add(o);
+		}
+		List<AnalysisOutput> sorted = new ArrayList<AnalysisOutput>(candidates);
+		Collections.sort(sorted, WSOuputComparator.INSTANCE);
+		// the same first candidates as the stable sort, equal ones included
+		List<AnalysisOutput> top = new ArrayList<AnalysisOutput>();
+		for (int k = 0; k <= candidates.size()+1; k++) {
+			TopCandidates.select(candidates, k, WSOuputComparator.INSTANCE, top);
+			assertEquals(sorted.subList(0, Math.min(k, sorted.size())), top);
+		}
+	}
+
+	@Test
+	public void testKoreanTokenizerBuffer() throws Exception {
+		KoreanTokenizer tokenizer = new KoreanTokenizer(new StringReader(""));
+		CharTermAttribute term = tokenizer.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offset = tokenizer.addAttribute(OffsetAttribute.class);
+
+		// a text read in several chunks, with a token longer than the initial buffer
+		StringBuilder input = new StringBuilder();
+		while (input.length() < 10000) input.append("반도체 device ");
+		StringBuilder longToken = new StringBuilder();
+		while (longToken.length() < 5000) longToken.append("가");
+		input.append(longToken).append(" 끝");
+		tokenizer.setReader(new StringReader(input.toString()));
+		tokenizer.reset();
+		int n = 0;
+		String last = null;
+		while (tokenizer.incrementToken()) {
+			assertEquals(input.substring(offset.startOffset(), offset.endOffset()), term.toString());
+			last = term.toString();
+			n++;
+		}
+		tokenizer.end();
+		tokenizer.close();
+		// the too long token is skipped
+		assertEquals(2*(10010/11)+1, n);
+		assertEquals("끝", last);
+
+		// the grown buffer is reused for the next text
+		tokenizer.setReader(new StringReader("짧은 abc"));
+		tokenizer.reset();
+		StringBuilder tokens = new StringBuilder();
+		while (tokenizer.incrementToken())
+			tokens.append(term).append('|').append(offset.startOffset()).append('-').append(offset.endOffset()).append(' ');
+		tokenizer.end();
+		tokenizer.close();
+		assertEquals("짧은|0-2 abc|3-6 ", tokens.toString());
+	}
+
+	@Test
+	public void testKoreanFilterAttributes() throws Exception {
+		Analyzer analyzer = new GrobidKoreanAnalyzer();
+		TokenStream ts = analyzer.tokenStream("text", new StringReader("호에 개시된 바와"));
+		CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offset = ts.addAttribute(OffsetAttribute.class);
+		TypeAttribute type = ts.addAttribute(TypeAttribute.class);
+		PositionIncrementAttribute pos = ts.addAttribute(PositionIncrementAttribute.class);
+		StringBuilder tokens = new StringBuilder();
+		ts.reset();
+		while (ts.incrementToken())
+			tokens.append(term).append('|').append(offset.startOffset()).append('-').append(offset.endOffset())
+				.append('|').append(type.type()).append('|').append(pos.getPositionIncrement()).append(' ');
+		ts.end();
+		ts.close();
+		assertEquals("호|0-1|<KORNOUN>|1 −에|2-2|<POSTJOSA>|1 개시된|3-6|<KOREAN>|1 "
+				+"바|7-8|<KORNOUN>|1 −와|9-9|<POSTJOSA>|1 ", tokens.toString());
+	}
 }
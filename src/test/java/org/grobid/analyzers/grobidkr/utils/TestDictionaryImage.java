@@ -0,0 +1,120 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.grobid.analyzers.grobidkr.morph.CompoundEntry;
+import org.grobid.analyzers.grobidkr.morph.WordEntry;
+
+public class TestDictionaryImage {
+
+	/**
+	 * @return the bytes of an image compiled from the text files
+	 */
+	private static byte[] compile() throws Exception {
+		File file = File.createTempFile("dictionary", ".bin");
+		try {
+			DictionaryCompiler.compile(file);
+			return Files.readAllBytes(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		DictionaryImage image = DictionaryImage.read(ByteBuffer.wrap(compile()));
+
+		// the same words as the text files, with their features and compound nouns
+		KoreanDictionary text = DictionaryUtil.readDictionary();
+		KoreanDictionary dictionary = image.getDictionary();
+		assertEquals(text.size(), dictionary.size());
+		for (int id=0; id<text.size(); id++) {
+			WordEntry expected = text.getEntry(id);
+			WordEntry entry = dictionary.get(expected.getWord());
+			assertNotNull(expected.getWord(), entry);
+			for (int i=0; i<=WordEntry.IDX_CNOUNX; i++)
+				assertEquals(expected.getWord(), expected.getFeature(i), entry.getFeature(i));
+			assertEquals(expected.getWord(), words(expected.getCompounds()), words(entry.getCompounds()));
+		}
+		assertNull(dictionary.get("그로비드"));
+
+		long[] syllables = SyllableUtil.toBits(SyllableUtil.readSyllableFeature());
+		LongBuffer bits = image.getSyllables();
+		long[] read = new long[bits.remaining()];
+		bits.get(read);
+		assertArrayEquals(syllables, read);
+
+		// the same tables as built from the text files
+		DictionaryBundle expected = DictionaryUtil.readBundle(text);
+		DictionaryBundle bundle = image.getBundle();
+		assertKeys(expected.josas, bundle.josas);
+		assertKeys(expected.eomis, bundle.eomis);
+		assertKeys(expected.eomiTails, bundle.eomiTails);
+		assertKeys(expected.endings, bundle.endings);
+		assertArrayEquals(expected.endingKinds, bundle.endingKinds);
+		assertKeys(expected.prefixs, bundle.prefixs);
+		assertKeys(expected.suffixs, bundle.suffixs);
+		assertEquals(expected.uncompounds.size(), bundle.uncompounds.size());
+		for (int id=0; id<expected.uncompounds.size(); id++) {
+			WordEntry entry = expected.uncompounds.getEntry(id);
+			assertEquals(entry.getWord(), words(entry.getCompounds()),
+					words(bundle.uncompounds.get(entry.getWord()).getCompounds()));
+		}
+		assertEquals(expected.cjwords, bundle.cjwords);
+		assertSame(dictionary, bundle.dictionary);
+		assertNull(bundle.userDictionary);
+	}
+
+	private static void assertKeys(DoubleArrayTrie expected, DoubleArrayTrie trie) {
+		assertEquals(expected.size(), trie.size());
+		for (int id=0; id<expected.size(); id++) {
+			assertEquals(expected.getKey(id), trie.getKey(id));
+			assertEquals(expected.getKey(id), id, trie.get(expected.getKey(id)));
+		}
+	}
+
+	@Test
+	public void testBadImage() throws Exception {
+		byte[] bytes = compile();
+
+		byte[] magic = bytes.clone();
+		magic[0] ^= 1;
+		try {
+			DictionaryImage.read(ByteBuffer.wrap(magic));
+			fail("bad MAGIC accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		byte[] version = bytes.clone();
+		ByteBuffer.wrap(version).putInt(4, DictionaryImage.VERSION+1);
+		try {
+			DictionaryImage.read(ByteBuffer.wrap(version));
+			fail("bad VERSION accepted");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("version"));
+		}
+
+		try {
+			DictionaryImage.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length/2)));
+			fail("truncated image accepted");
+		} catch (RuntimeException e) {
+			// IllegalArgumentException or BufferUnderflowException
+		}
+	}
+
+	private static String words(List<CompoundEntry> compounds) {
+		StringBuilder s = new StringBuilder();
+		for (CompoundEntry c : compounds)
+			s.append(c.getWord()).append('/').append(c.getOffset()).append(' ');
+		return s.toString();
+	}
+}
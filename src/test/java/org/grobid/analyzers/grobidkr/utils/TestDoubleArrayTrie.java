@@ -0,0 +1,238 @@
+package org.grobid.analyzers.grobidkr.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.grobid.analyzers.grobidkr.morph.CompoundEntry;
+import org.grobid.analyzers.grobidkr.morph.WordEntry;
+
+public class TestDoubleArrayTrie {
+
+	// sorted: ab(0) 가(1) 가나(2) 가나다(3) 가나라(4) 나(5)
+	private static final String[] KEYS = {"가나", "가", "나", "가나다", "가나라", "Ab"};
+
+	@Test
+	public void testGet() {
+		DoubleArrayTrie trie = new DoubleArrayTrie(KEYS, true);
+		assertEquals(6, trie.size());
+		String[] sorted = {"ab", "가", "가나", "가나다", "가나라", "나"};
+		for (int id=0; id<sorted.length; id++) {
+			assertEquals(sorted[id], id, trie.get(sorted[id]));
+			assertEquals(sorted[id], trie.getKey(id));
+			assertEquals(sorted[id].length(), trie.keyLength(id));
+		}
+		assertEquals(0, trie.get("AB"));
+		char[] buf = "xx가나다yy".toCharArray();
+		assertEquals(3, trie.get(buf, 2, 3));
+		assertEquals(2, trie.get('가', "나"));
+
+		// misses, and the empty key
+		assertEquals(-1, trie.get("다"));
+		assertEquals(-1, trie.get("가나다라"));
+		assertEquals(-1, trie.get("a"));
+		assertEquals(-1, trie.get(""));
+		assertEquals(-1, trie.get(buf, 2, 0));
+		assertEquals(-1, new DoubleArrayTrie(KEYS, false).get("ab"));
+
+		DoubleArrayTrie withEmpty = new DoubleArrayTrie(new String[]{"x", ""}, false);
+		assertEquals(0, withEmpty.get(""));
+		assertEquals(1, withEmpty.get("x"));
+
+		DoubleArrayTrie empty = new DoubleArrayTrie(new String[0], false);
+		assertEquals(0, empty.size());
+		assertEquals(-1, empty.get(""));
+		assertEquals(-1, empty.get("가"));
+		assertFalse(empty.hasPrefix(""));
+	}
+
+	@Test
+	public void testPrefixes() {
+		DoubleArrayTrie trie = new DoubleArrayTrie(KEYS, true);
+		char[] buf = "xx가나다라yy".toCharArray();
+
+		// the keys which are a prefix of 가나다라, shortest first
+		int[] ids = new int[8];
+		assertEquals(3, trie.commonPrefixSearch(buf, 2, 4, ids));
+		assertEquals(1, ids[0]);
+		assertEquals(2, ids[1]);
+		assertEquals(3, ids[2]);
+		int[] one = new int[1];
+		assertEquals(1, trie.commonPrefixSearch(buf, 2, 4, one));
+		assertEquals(1, one[0]);
+		assertEquals(0, trie.commonPrefixSearch(buf, 0, 4, ids));
+
+		// the keys starting with 가나: 가나, 가나다, 가나라
+		assertEquals(2, trie.prefixStart(buf, 2, 2));
+		assertEquals(5, trie.prefixEnd(buf, 2, 2));
+		assertTrue(trie.hasPrefix(buf, 2, 2));
+		assertTrue(trie.hasPrefix(buf, 2, 3));
+		assertFalse(trie.hasPrefix(buf, 2, 4));
+		assertEquals(trie.prefixStart(buf, 0, 1), trie.prefixEnd(buf, 0, 1));
+		assertFalse(trie.hasPrefix(buf, 0, 1));
+		// all the keys start with the empty prefix
+		assertEquals(0, trie.prefixStart(buf, 2, 0));
+		assertEquals(6, trie.prefixEnd(buf, 2, 0));
+	}
+
+	@Test
+	public void testSuffixMasks() {
+		// 100 endings, more than the bits of a mask: 가, 가가, ..., and 나, 나나, ...
+		String[] keys = new String[100];
+		for (int i=0; i<50; i++) {
+			keys[i] = repeat('가', i+1);
+			keys[50+i] = repeat('나', i+1);
+		}
+		DoubleArrayTrie trie = DoubleArrayTrie.reversed(keys, false);
+		assertEquals(100, trie.size());
+		byte[] kinds = new byte[trie.size()];
+		for (int i=0; i<keys.length; i++)
+			kinds[trie.get(new StringBuilder(keys[i]).reverse())] |= i<50 ? 1 : 2;
+
+		// the masks are by length: the ids past 64 are reported as well
+		char[] buf = ("xx"+repeat('나', 70)+repeat('가', 50)+"yy").toCharArray();
+		long[] masks = new long[2];
+		trie.suffixMasks(buf, 2, 120, kinds, masks);
+		assertEquals((1L<<51)-2, masks[0]);
+		assertEquals(0, masks[1]);
+		assertEquals(masks[0], trie.suffixMask(buf, 2, 120));
+
+		// but not the suffixes of 64 chars or more
+		trie.suffixMasks(buf, 2, 70, kinds, masks);
+		assertEquals(0, masks[0]);
+		assertEquals((1L<<51)-2, masks[1]);
+		String[] longer = {repeat('나', 63), repeat('나', 64)};
+		assertEquals(1L<<63, DoubleArrayTrie.reversed(longer, false).suffixMask(buf, 2, 70));
+	}
+
+	@Test
+	public void testFindEndings() throws Exception {
+		long[] masks = new long[2];
+		for (String word : new String[]{"학교에서는", "먹었습니다", "사람들이", "하였다", "그로비드"}) {
+			char[] buf = ("x"+word).toCharArray();
+			DictionaryUtil.findEndings(buf, 1, word.length(), masks);
+			assertEquals(masks[0], DictionaryUtil.josaSuffixMask(buf, 1, word.length()));
+			assertEquals(masks[1], DictionaryUtil.eomiTailSuffixMask(buf, 1, word.length()));
+			for (int k=1; k<=word.length(); k++) {
+				int start = buf.length-k;
+				assertEquals(word+" "+k, DictionaryUtil.existJosa(buf, start, k), (masks[0]&1L<<k)!=0);
+				assertEquals(word+" "+k, DictionaryUtil.existEomiTail(buf, start, k), (masks[1]&1L<<k)!=0);
+			}
+		}
+		DictionaryUtil.findEndings("학교에서는".toCharArray(), 0, 5, masks);
+		assertTrue((masks[0]&1L<<1)!=0);
+		assertTrue((masks[0]&1L<<3)!=0);
+	}
+
+	@Test
+	public void testBuilder() throws Exception {
+		DoubleArrayTrie trie = new DoubleArrayTrie(new String[]{"나", "가", "나", "가"}, false);
+		assertEquals(2, trie.size());
+		assertEquals(0, trie.get("가"));
+		assertEquals(1, trie.get("나"));
+
+		// the last word added wins
+		KoreanDictionary base = new KoreanDictionary.Builder()
+			.add("가나", "100000000X".toCharArray(), null)
+			.add("다라", "100000000X".toCharArray(), null)
+			.add("가나", "010000000X".toCharArray(), null)
+			.build();
+		assertEquals(2, base.size());
+		assertEquals('0', base.get("가나").getFeature(WordEntry.IDX_NOUN));
+		assertEquals('1', base.get("가나").getFeature(WordEntry.IDX_VERB));
+
+		List<CompoundEntry> compounds = new ArrayList<CompoundEntry>();
+		compounds.add(new CompoundEntry("다"));
+		compounds.add(new CompoundEntry("라"));
+		KoreanDictionary merged = new KoreanDictionary.Builder()
+			.add("마", "100000000X".toCharArray(), null)
+			.addAll(base)
+			.add("다라", "20000X".toCharArray(), compounds)
+			.build();
+		assertEquals(3, merged.size());
+		assertEquals('1', merged.get("가나").getFeature(WordEntry.IDX_VERB));
+		assertEquals('2', merged.get("다라").getFeature(WordEntry.IDX_NOUN));
+		assertEquals(2, merged.get("다라").getCompounds().size());
+		assertNotNull(merged.get("마"));
+
+		KoreanDictionary overridden = new KoreanDictionary.Builder().addAll(merged).addAll(base).build();
+		assertEquals('1', overridden.get("다라").getFeature(WordEntry.IDX_NOUN));
+		assertEquals(0, overridden.get("다라").getCompounds().size());
+	}
+
+	@Test
+	public void testFindWithPrefix() throws Exception {
+		KoreanDictionary dictionary = DictionaryUtil.readDictionary();
+		Trie<String,String> old = new Trie<String,String>(true);
+		for (int id=0; id<dictionary.size(); id++) {
+			String word = dictionary.getEntry(id).getWord();
+			old.add(word, word);
+		}
+
+		for (String prefix : new String[]{"", "가", "자연", "반도체", "하", "ABC", "없는말"}) {
+			List<String> expected = new ArrayList<String>();
+			for (Iterator it = old.getPrefixedBy(prefix); it.hasNext(); )
+				expected.add((String) it.next());
+			Collections.sort(expected);
+
+			List<String> found = new ArrayList<String>();
+			for (Iterator<WordEntry> it = dictionary.findWithPrefix(prefix); it.hasNext(); )
+				found.add(it.next().getWord());
+			assertEquals(prefix, expected, found);
+			assertEquals(prefix, expected.size()>0, dictionary.hasPrefix(prefix));
+		}
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		List<CompoundEntry> compounds = new ArrayList<CompoundEntry>();
+		CompoundEntry c = new CompoundEntry("분석기");
+		c.setOffset(4);
+		compounds.add(new CompoundEntry("그로비드"));
+		compounds.add(c);
+		KoreanDictionary dictionary = new KoreanDictionary.Builder()
+			.add("그로비드", "100000000X".toCharArray(), null)
+			.add("그로비드분석기", "20000X".toCharArray(), compounds)
+			.add("먹", "010000000X".toCharArray(), null)
+			.build();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		dictionary.write(out);
+		out.writeInt(12345);
+		out.close();
+		ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+		KoreanDictionary read = KoreanDictionary.read(in);
+		// the buffer is left after the dictionary
+		assertEquals(12345, in.getInt());
+
+		assertEquals(dictionary.size(), read.size());
+		for (int id=0; id<dictionary.size(); id++) {
+			WordEntry expected = dictionary.getEntry(id);
+			WordEntry entry = read.get(expected.getWord());
+			assertNotNull(entry);
+			for (int i=0; i<=WordEntry.IDX_CNOUNX; i++)
+				assertEquals(expected.getFeature(i), entry.getFeature(i));
+			assertEquals(expected.getCompounds().size(), entry.getCompounds().size());
+		}
+		List<CompoundEntry> parts = read.get("그로비드분석기").getCompounds();
+		assertEquals(Arrays.asList("그로비드", "분석기"), Arrays.asList(parts.get(0).getWord(), parts.get(1).getWord()));
+		assertEquals(4, parts.get(1).getOffset());
+		assertNull(read.get("그로"));
+		assertTrue(read.hasPrefix("그로"));
+	}
+
+	private static String repeat(char c, int n) {
+		char[] chars = new char[n];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
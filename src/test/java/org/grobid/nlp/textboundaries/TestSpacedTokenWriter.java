@@ -0,0 +1,165 @@
+package org.grobid.nlp.textboundaries;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestSpacedTokenWriter {
+
+	private static final String[] MODES = {null, "keepMsuf", "joinMsuf", "hideMsuf", "prefixMsuf", "suffixMsuf", "otherMsuf"};
+
+	// token, as written by tokenizeWithSpaces
+	private static final String[][] CLEAN = {
+		{"abc", "abc"},
+		{"(3, 4)", "(3,‗4)"},
+		{"12 123 234", "12‗123‗234"},
+		{"  lead", "lead"},
+		{"and / or", "and/or"},
+		{"a / b / c", "a/b/c"},
+		{"a /b", "a‗/b"},
+		{"a\u00ADb\u00AD", "ab"},
+		{"a\u0000b", "a#b"},
+		{"(a;b)", "(a,b)"},
+		{"<p;q", "<p,q"},
+		{";x)", ";x)"},
+		{"(x;", "(x;"},
+		{"a;b", "a;b"},
+		{"", ""},
+	};
+
+	// tokens joined by spaces, then the text in each mode of MODES
+	private static final String[][] NORMALIZE = {
+		{"a b . ",
+			"a b", "a b", "a b", "a b", "a b", "a b", "a b"},
+		{"a b   . ",
+			"a b", "a b", "a b", "a b", "a b", "a b", "a b"},
+		{"a b .  ",
+			"a b . ", "a b . ", "a b . ", "a b . ", "a b . ", "a b . ", "a b . "},
+		{"a b . \n",
+			"a b\n", "a b\n", "a b\n", "a b\n", "a b\n", "a b\n", "a b\n"},
+		{"a b . \r\n",
+			"a b\r\n", "a b\r\n", "a b\r\n", "a b\r\n", "a b\r\n", "a b\r\n", "a b\r\n"},
+		{". ",
+			"", "", "", "", "", "", ""},
+		{"a . b",
+			"a . b", "a . b", "a . b", "a . b", "a . b", "a . b", "a . b"},
+		{"x_ TODEL _y",
+			"x_TODEL_y", "x_TODEL_y", "x_TODEL_y", "x_TODEL_y", "x_TODEL_y", "x_TODEL_y", "x_TODEL_y"},
+		{"_ TODEL _ TODEL _",
+			"_TODEL_ TODEL _", "_TODEL_ TODEL _", "_TODEL_ TODEL _", "_TODEL_ TODEL _", "_TODEL_ TODEL _", "_TODEL_ TODEL _", "_TODEL_ TODEL _"},
+		{"_  TODEL _",
+			"_ TODEL _", "_ TODEL _", "_ TODEL _", "_ TODEL _", "_ TODEL _", "_ TODEL _", "_ TODEL _"},
+		{"a   b    c  ",
+			"a b c ", "a b c ", "a b c ", "a b c ", "a b c ", "a b c ", "a b c "},
+		{"a − b",
+			"a − b", "a − b", "a −b", "a b", "a− b", "a −b", "a − b"},
+		{"a  −   b",
+			"a − b", "a − b", "a −b", "a b", "a− b", "a −b", "a − b"},
+		{"a − b − − c",
+			"a − b − − c", "a − b − − c", "a −b −− c", "a b − c", "a− b− − c", "a −b −− c", "a − b − − c"},
+		{"− a − ",
+			"− a − ", "− a − ", "− a −", "− a ", "− a− ", "− a −", "− a − "},
+		{"a −b − . ",
+			"a −b −", "a −b −", "a −b −", "a −b −", "a −b −", "a −b −", "a −b −"},
+	};
+
+	@Test
+	public void testClean() {
+		for (String[] test : CLEAN) {
+			StringBuilder token = new StringBuilder("x ");
+			SpacedTokenWriter.clean(test[0], token);
+			assertEquals(test[0], "x "+test[1], token.toString());
+			assertEquals(test[0], test[1], legacyClean(test[0]));
+		}
+	}
+
+	@Test
+	public void testNormalize() {
+		for (String[] test : NORMALIZE) {
+			for (int m=0; m<MODES.length; m++) {
+				String expected = test[m+1];
+				assertEquals(MODES[m]+": '"+test[0]+"'", expected, SpacedTokenWriter.normalize(new StringBuilder(test[0]), MODES[m]));
+				assertEquals(MODES[m]+": '"+test[0]+"'", expected, legacyNormalize(test[0], MODES[m]));
+			}
+		}
+	}
+
+	@Test
+	public void testTokenizeWithSpaces() throws Exception {
+		String[][] texts = {
+			{"ko_g", "제 4,665,918 호에 개시된 바와 같은 자체 팽창 헬릭스 (helix) 를 포함한다."},
+			{"ko_g", "청구항 ＩＢＭ＇ｓ 제１２３항 Ｈ２Ｏ （１） ＵＳ　６，２５１，２８２호에 − − 바와 −"},
+			{"ja_g", "EL表示パネル１０は、EL基板１１とCF１２とを対向配置させ . "},
+			{"zh_g", "其它a/987类型 (US 6,251,282)。 x_ TODEL _y"},
+		};
+		String previous = System.getProperty("NLP.MsufBehaviour");
+		try {
+			for (String mode : MODES) {
+				if (mode==null)
+					System.clearProperty("NLP.MsufBehaviour");
+				else
+					System.setProperty("NLP.MsufBehaviour", mode);
+				for (String[] text : texts) {
+					ReTokenizer o = new ReTokenizer(text[0]);
+					StringBuilder s = new StringBuilder();
+					String[] ts = o.tokensAsArray(text[1], false);
+					for (int i=0; i<ts.length; i++)
+						s.append(i==0 ? "" : " ").append(legacyClean(ts[i]));
+					assertEquals(mode+": "+text[1], legacyNormalize(s.toString(), mode), o.tokenizeWithSpaces(text[1]));
+				}
+			}
+		} finally {
+			if (previous == null)
+				System.clearProperty("NLP.MsufBehaviour");
+			else
+				System.setProperty("NLP.MsufBehaviour", previous);
+		}
+	}
+
+	/**
+	 * A token as cleaned by the first version of tokenizeWithSpaces.
+	 */
+	private static String legacyClean(String t) {
+		StringBuffer token = new StringBuffer();
+		int j = 0;
+		boolean specialCaseOfParentheses = (t.endsWith(")") || t.startsWith("<"));
+		boolean containSpaces = false;
+		for (char c : t.toCharArray()) {
+			if (c=='\u00AD') {
+				// skip
+			} else if (c=='\u0000') {
+				token.append('#'); j++;
+			} else if (c==' ') {
+				if (j>0) {
+					token.append('‗'); j++;
+					containSpaces = true;
+				}
+			} else if (c==';' && specialCaseOfParentheses && j>0 && j<t.length()-1) {
+				token.append(','); j++;
+			} else {
+				token.append(c); j++;
+			}
+		}
+		if (containSpaces && token.toString().contains("‗/‗"))
+			return token.toString().replaceAll("‗/‗", "/");
+		return token.toString();
+	}
+
+	/**
+	 * The tokens joined by spaces as post-processed by the first version of tokenizeWithSpaces.
+	 */
+	private static String legacyNormalize(String s, String mode) {
+		s = s.replaceAll("[ ]*\\.[ ]$", "");
+		s = s.replaceAll("_ TODEL _", "_TODEL_");
+		s = s.replaceAll("[ ][ ]+", " ");
+		if (mode!=null) {
+			if (mode.equals("joinMsuf") || mode.equals("suffixMsuf")) {
+				s = s.replaceAll(" − ", " −");
+			} else if (mode.equals("hideMsuf")) {
+				s = s.replaceAll(" − ", " ");
+			} else if (mode.equals("prefixMsuf")) {
+				s = s.replaceAll(" − ", "− ");
+			}
+		}
+		return s;
+	}
+}